@@ -0,0 +1,23 @@
+package bench;
+// jmh
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link PassBenchmark} and {@link NameBenchmark} with the gc profiler always on, so every pass reports
+ * its allocation rate next to the throughput. Regular JMH options are accepted.
+ */
+public class BenchMain {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(PassBenchmark.class.getSimpleName())
+                .include(NameBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+// jadx.core
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+// jmh
+import org.openjdk.jmh.annotations.*;
+
+// java
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation = obfuscation check of every class, method and field name of the input file,
+ * the way the rename pass asks for them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class NameBenchmark {
+    private static final String INPUT_DIR = System.getProperty("bench.inputDir", "../test");
+
+    @Param({"base64.dex", "rename_test.apk", "deobfuscate_test.apk"})
+    public String input;
+
+    String[] names;
+    MethodHandle isObfuscationName;
+    MethodHandle isObfuscationNames;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        try (PassFixture fixture = new PassFixture(new File(INPUT_DIR, input), null)) {
+            List<String> list = new ArrayList<>();
+            for (ClassNode cls : fixture.getRoot().getClasses()) {
+                list.add(cls.getFullName());
+                for (MethodNode mth : cls.getMethods()) {
+                    list.add(mth.getName());
+                }
+                for (FieldNode field : cls.getFields()) {
+                    list.add(field.getName());
+                }
+            }
+            names = list.toArray(new String[0]);
+        }
+        // MyRenameVisitor is in the default package
+        Class<?> cls = Class.forName("MyRenameVisitor");
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        isObfuscationName = lookup.findStatic(cls, "isObfuscationName", MethodType.methodType(boolean.class, String.class));
+        isObfuscationNames = lookup.findStatic(cls, "isObfuscationNames", MethodType.methodType(boolean[].class, String[].class));
+    }
+
+    @Benchmark
+    public int single() throws Throwable {
+        int count = 0;
+        for (String name : names) {
+            if ((boolean) isObfuscationName.invokeExact(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean[] bulk() throws Throwable {
+        return (boolean[]) isObfuscationNames.invokeExact(names);
+    }
+}
@@ -0,0 +1,165 @@
+package bench;
+// jadx.core
+import InsnScanner.InsnScanner;
+import InsnScanner.ScanHandler;
+import ReflectionVisitor.ReflectionVisitor;
+import jadx.core.dex.nodes.RootNode;
+import jadx.core.dex.visitors.IDexTreeVisitor;
+import jadx.core.dex.visitors.typeinference.FinishTypeInference;
+// jmh
+import org.openjdk.jmh.annotations.*;
+
+// java
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation = one plugin pass over every class of the input file.
+ * The IR is rebuilt before each invocation (outside of the measurement),
+ * so the pass always works on the same freshly processed code.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class PassBenchmark {
+    private static final String INPUT_DIR = System.getProperty("bench.inputDir", "../test");
+
+    @State(Scope.Benchmark)
+    public static abstract class PassState {
+        @Param({"base64.dex", "rename_test.apk", "deobfuscate_test.apk"})
+        public String input;
+
+        PassFixture fixture;
+        IDexTreeVisitor pass;
+
+        abstract Class<?> insertAfter();
+
+        abstract IDexTreeVisitor createPass(PassFixture fixture) throws Exception;
+
+        @Setup(Level.Trial)
+        public void load() throws Exception {
+            fixture = new PassFixture(new File(INPUT_DIR, input), insertAfter());
+            pass = createPass(fixture);
+        }
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            fixture.reset();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            fixture.close();
+        }
+    }
+
+    public static class DecodeState extends PassState {
+        @Override
+        Class<?> insertAfter() {
+            return FinishTypeInference.class;
+        }
+
+        @Override
+        IDexTreeVisitor createPass(PassFixture fixture) throws Exception {
+            return newPluginPass("DecodeVisitor");
+        }
+    }
+
+    public static class RenameState extends PassState {
+        @Override
+        Class<?> insertAfter() {
+            return null;
+        }
+
+        // the rename plan is built once per pass instance, so every invocation needs a new one
+        @Override
+        public void reset() {
+            super.reset();
+            try {
+                pass = createPass(fixture);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        IDexTreeVisitor createPass(PassFixture fixture) throws Exception {
+            return (IDexTreeVisitor) Class.forName("MyRenameVisitor")
+                    .getConstructor(RootNode.class)
+                    .newInstance(fixture.getRoot());
+        }
+    }
+
+    public static class RGBState extends PassState {
+        @Override
+        Class<?> insertAfter() {
+            return FinishTypeInference.class;
+        }
+
+        @Override
+        IDexTreeVisitor createPass(PassFixture fixture) throws Exception {
+            return newPluginPass("RGBVisitor");
+        }
+    }
+
+    public static class ReflectionState extends PassState {
+        @Override
+        Class<?> insertAfter() {
+            return FinishTypeInference.class;
+        }
+
+        @Override
+        IDexTreeVisitor createPass(PassFixture fixture) {
+            return new ReflectionVisitor(fixture.getDecompiler());
+        }
+    }
+
+    // decode, rgb and reflection sharing one walk, MyPlugin scans strings in an earlier walk of their own
+    public static class ScannerState extends PassState {
+        @Override
+        Class<?> insertAfter() {
+            return FinishTypeInference.class;
+        }
+
+        @Override
+        IDexTreeVisitor createPass(PassFixture fixture) throws Exception {
+            InsnScanner scanner = new InsnScanner();
+            scanner.addHandler((ScanHandler<?>) newPluginPass("DecodeVisitor"));
+            scanner.addHandler(new ReflectionVisitor(fixture.getDecompiler()));
+            scanner.addHandler((ScanHandler<?>) newPluginPass("RGBVisitor"));
+            return scanner;
+        }
+    }
+
+    // visitors in the default package can't be referenced from here
+    private static IDexTreeVisitor newPluginPass(String className) throws Exception {
+        return (IDexTreeVisitor) Class.forName(className).getConstructor().newInstance();
+    }
+
+    @Benchmark
+    public void decode(DecodeState state) {
+        state.fixture.run(state.pass);
+    }
+
+    @Benchmark
+    public void rename(RenameState state) {
+        state.fixture.run(state.pass);
+    }
+
+    @Benchmark
+    public void rgb(RGBState state) {
+        state.fixture.run(state.pass);
+    }
+
+    @Benchmark
+    public void reflection(ReflectionState state) {
+        state.fixture.run(state.pass);
+    }
+
+    @Benchmark
+    public void scanner(ScannerState state) {
+        state.fixture.run(state.pass);
+    }
+}
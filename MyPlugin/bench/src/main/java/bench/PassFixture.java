@@ -0,0 +1,104 @@
+package bench;
+// jadx.api
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+// jadx.core
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+import jadx.core.dex.visitors.DepthTraversal;
+import jadx.core.dex.visitors.IDexTreeVisitor;
+
+// java
+import java.io.File;
+import java.util.List;
+
+/**
+ * Real jadx IR for one input file, replayed up to the position where a plugin pass is registered.
+ */
+public class PassFixture implements AutoCloseable {
+    private final JadxDecompiler jadx;
+    private final List<ClassNode> classes;
+    private final List<IDexTreeVisitor> prefix;
+
+    /**
+     * @param input   dex/apk file to load
+     * @param after   jadx pass the plugin pass is inserted after, or null if it is appended at the end
+     */
+    public PassFixture(File input, Class<?> after) {
+        JadxArgs jadxArgs = new JadxArgs();
+        jadxArgs.setInputFile(input);
+        // keep jadx's own deobfuscator off: aliases are reset between invocations,
+        // so the rename pass always sees the original names
+        jadxArgs.setDeobfuscationOn(false);
+        jadxArgs.setSkipResources(true);
+        this.jadx = new JadxDecompiler(jadxArgs);
+        this.jadx.load();
+
+        RootNode root = jadx.getRoot();
+        List<IDexTreeVisitor> passes = root.getPasses();
+        int end = passes.size();
+        if (after != null) {
+            for (int i = 0; i < passes.size(); i++) {
+                if (passes.get(i).getClass().equals(after)) {
+                    end = i + 1;
+                    break;
+                }
+            }
+        }
+        this.prefix = List.copyOf(passes.subList(0, end));
+        this.classes = root.getClassesWithoutInner();
+    }
+
+    /**
+     * Drop all processing results and run the jadx passes preceding the benchmarked pass again,
+     * so every invocation sees the same unmodified IR.
+     */
+    public void reset() {
+        for (ClassNode cls : classes) {
+            removeAliases(cls);
+            cls.deepUnload();
+            cls.load();
+            for (IDexTreeVisitor pass : prefix) {
+                DepthTraversal.visit(pass, cls);
+            }
+        }
+    }
+
+    private void removeAliases(ClassNode cls) {
+        cls.getClassInfo().removeAlias();
+        for (MethodNode mth : cls.getMethods()) {
+            mth.getMethodInfo().removeAlias();
+        }
+        for (FieldNode field : cls.getFields()) {
+            field.getFieldInfo().removeAlias();
+        }
+        for (ClassNode inner : cls.getInnerClasses()) {
+            removeAliases(inner);
+        }
+    }
+
+    public void run(IDexTreeVisitor pass) {
+        for (ClassNode cls : classes) {
+            DepthTraversal.visit(pass, cls);
+        }
+    }
+
+    public JadxDecompiler getDecompiler() {
+        return jadx;
+    }
+
+    public RootNode getRoot() {
+        return jadx.getRoot();
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    @Override
+    public void close() {
+        jadx.close();
+    }
+}
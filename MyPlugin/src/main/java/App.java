@@ -4,9 +4,25 @@ import jadx.api.plugins.JadxPlugin;
 // java
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
 
 public class App {
-    public static void main(String[] args) throws IOException {
+    /**
+     * Without arguments, decompile app-debug.apk to output.
+     * With arguments, decompile many inputs in one JVM:
+     * <pre>
+     * App [-o outDir] [-j jobs] [-p rename,decode,reflection,rgb,fold,interpret] [-i includes] [-x excludes] [-r] input...
+     * </pre>
+     * includes and excludes are comma separated package prefixes, nothing is filtered by default.
+     * -r also writes the decode report, rename mapping and result cache of each input next to its sources,
+     * they are read again by the next run on the same input.
+     * inputs are files, directories or .txt/.lst lists of files, see {@link BatchRunner#collectInputs}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0) {
+            runBatch(args);
+            return;
+        }
         JadxArgs jadxArgs = new JadxArgs();
         // input file
         jadxArgs.setInputFile(new File("app-debug.apk"));
@@ -17,24 +33,75 @@ public class App {
         jadxArgs.setDeobfuscationOn(true);
         // output dir
         jadxArgs.setOutDir(new File("output"));
+        // select passes
+        Map<String, String> pluginOptions = new HashMap<>();
+        pluginOptions.put(MyPlugin.OPT_REFLECTION, "yes");
+        jadxArgs.setPluginOptions(pluginOptions);
 
         try (JadxDecompiler jadx = new JadxDecompiler(jadxArgs)) {
-            // load decompiler
+            // load decompiler, plugin options are given to the plugins here
             jadx.load();
             Iterable<JadxPlugin> plugins = jadx.getPluginManager().getAllPlugins();
+            MyPlugin myPlugin = null;
             for (JadxPlugin plugin : plugins) {
                 // run MyPlugin
                 if (plugin instanceof MyPlugin) {
-                    // select plugin
-                    MyPlugin myPlugin = new MyPlugin(jadx, false, false, true, false);
+                    myPlugin = (MyPlugin) plugin;
+                    myPlugin.register(jadx);
                     System.out.println("find MyPlugin");
                 }
             }
             // save result
             jadx.save();
+            if (myPlugin != null) {
+                myPlugin.close();
+                System.out.print(myPlugin.getMetrics().summary());
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    private static void runBatch(String[] args) throws IOException, InterruptedException {
+        File outDir = new File("output");
+        int jobs = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        Set<String> passes = Set.of("reflection");
+        String includes = "";
+        String excludes = "";
+        boolean keepState = false;
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o" -> outDir = new File(args[++i]);
+                case "-j" -> jobs = Integer.parseInt(args[++i]);
+                case "-p" -> passes = Set.of(args[++i].split(","));
+                case "-i" -> includes = args[++i];
+                case "-x" -> excludes = args[++i];
+                case "-r" -> keepState = true;
+                default -> paths.add(args[i]);
+            }
+        }
+        Map<String, String> options = new HashMap<>();
+        for (String pass : List.of("rename", "decode", "reflection", "rgb", "fold", "interpret")) {
+            options.put(MyPlugin.PLUGIN_ID + '.' + pass, passes.contains(pass) ? "yes" : "no");
+        }
+        options.put(MyPlugin.OPT_INCLUDE, includes);
+        options.put(MyPlugin.OPT_EXCLUDE, excludes);
+        boolean writeState = keepState;
+        // outputs of each input are next to its sources, so caches and mappings are reused per app
+        BatchRunner runner = new BatchRunner(outDir, jobs, (jadx, inputOut) -> {
+            Map<String, String> inputOptions = new HashMap<>(options);
+            if (writeState) {
+                inputOptions.put(MyPlugin.OPT_DECODE_REPORT, new File(inputOut, "decode.jsonl").getPath());
+                inputOptions.put(MyPlugin.OPT_RENAME_MAPPING, new File(inputOut, "rename.jobf").getPath());
+                inputOptions.put(MyPlugin.OPT_RESULT_CACHE, new File(inputOut, "results.cache").getPath());
+            }
+            return new MyPlugin(jadx, inputOptions);
+        });
+        List<BatchRunner.Result> results = runner.run(BatchRunner.collectInputs(paths));
+        long failed = results.stream().filter(r -> !r.isOk()).count();
+        System.out.println("done " + (results.size() - failed) + ", failed " + failed
+                + ", summary in " + new File(outDir, BatchRunner.SUMMARY_FILE));
+    }
 }
@@ -0,0 +1,230 @@
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Decompiles many inputs in one JVM.
+ * Inputs run on a work-stealing pool, a new input starts only when its estimated heap use fits in the {@link MemoryGate}.
+ * Each input gets its own output directory with the pass metrics, a failed input is recorded in the summary and the batch goes on.
+ */
+public class BatchRunner {
+    // heap used by jadx for an input, estimated from the file size
+    public static final long BASE_HEAP_PER_INPUT = 64L * 1024 * 1024;
+    public static final long HEAP_PER_INPUT_BYTE = 40;
+    public static final String SUMMARY_FILE = "summary.tsv";
+    public static final String METRICS_FILE = "metrics.txt";
+    private static final Set<String> INPUT_EXTENSIONS = Set.of("apk", "dex", "jar", "aar", "zip");
+
+    private final File outDir;
+    private final int threads;
+    private final MemoryGate gate;
+    // creates the plugin for a loaded input and its output directory
+    private final BiFunction<JadxDecompiler, File, MyPlugin> pluginFactory;
+
+    public BatchRunner(File outDir, int threads, BiFunction<JadxDecompiler, File, MyPlugin> pluginFactory) {
+        this(outDir, threads, new MemoryGate(MemoryGate.defaultBudget(), threads), pluginFactory);
+    }
+
+    public BatchRunner(File outDir, int threads, MemoryGate gate, BiFunction<JadxDecompiler, File, MyPlugin> pluginFactory) {
+        this.outDir = outDir;
+        this.threads = threads;
+        this.gate = gate;
+        this.pluginFactory = pluginFactory;
+    }
+
+    /**
+     * @param paths input files, directories (their apk, dex, jar, aar and zip files)
+     *              or lists of input files (.txt or .lst, one path per line, '#' for comments)
+     */
+    public static List<File> collectInputs(List<String> paths) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File[] files = file.listFiles(f -> f.isFile() && INPUT_EXTENSIONS.contains(getExtension(f)));
+                if (files != null) {
+                    // same order on every run
+                    Arrays.sort(files);
+                    inputs.addAll(Arrays.asList(files));
+                }
+            } else if (getExtension(file).equals("txt") || getExtension(file).equals("lst")) {
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        inputs.add(new File(line));
+                    }
+                }
+            } else {
+                inputs.add(file);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Run all inputs and write the summary, results are in the order of inputs.
+     */
+    public List<Result> run(List<File> inputs) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        List<Future<Result>> futures = new ArrayList<>(inputs.size());
+        Set<String> outNames = new HashSet<>();
+        try {
+            for (File input : inputs) {
+                File inputOut = new File(outDir, makeOutName(input, outNames));
+                long reserved = gate.acquire(estimateHeap(input));
+                futures.add(pool.submit(() -> {
+                    try {
+                        return process(input, inputOut);
+                    } finally {
+                        gate.release(reserved);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // process() catches everything, kept for errors thrown by the pool itself
+                    results.add(Result.failed(inputs.get(i), null, 0, e.getCause()));
+                }
+            }
+            writeSummary(results);
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Result process(File input, File inputOut) {
+        long start = System.nanoTime();
+        try {
+            JadxArgs jadxArgs = new JadxArgs();
+            jadxArgs.setInputFile(input);
+            jadxArgs.setUseSourceNameAsClassAlias(true);
+            jadxArgs.setDeobfuscationOn(true);
+            jadxArgs.setOutDir(inputOut);
+            // inputs already run in parallel, share the cores between them
+            jadxArgs.setThreadsCount(Math.max(1, Runtime.getRuntime().availableProcessors() / threads));
+            try (JadxDecompiler jadx = new JadxDecompiler(jadxArgs)) {
+                jadx.load();
+                MyPlugin myPlugin = pluginFactory.apply(jadx, inputOut);
+                try {
+                    jadx.save();
+                } finally {
+                    myPlugin.close();
+                }
+                Files.createDirectories(inputOut.toPath());
+                Files.writeString(new File(inputOut, METRICS_FILE).toPath(), myPlugin.getMetrics().summary(), StandardCharsets.UTF_8);
+                return Result.done(input, inputOut, System.nanoTime() - start, jadx.getErrorsCount());
+            }
+        } catch (Throwable t) {
+            // also errors like OutOfMemoryError or StackOverflowError, memory of the input is free after this
+            return Result.failed(input, inputOut, System.nanoTime() - start, t);
+        }
+    }
+
+    public static long estimateHeap(File input) {
+        return BASE_HEAP_PER_INPUT + input.length() * HEAP_PER_INPUT_BYTE;
+    }
+
+    // file name without extension, with a number for inputs of the same name
+    private static String makeOutName(File input, Set<String> taken) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        String outName = name;
+        for (int suffix = 2; !taken.add(outName.toLowerCase(Locale.ROOT)); suffix++) {
+            outName = name + '_' + suffix;
+        }
+        return outName;
+    }
+
+    private static String getExtension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private void writeSummary(List<Result> results) throws IOException {
+        Files.createDirectories(outDir.toPath());
+        try (Writer writer = Files.newBufferedWriter(new File(outDir, SUMMARY_FILE).toPath(), StandardCharsets.UTF_8)) {
+            writer.write("input\tstatus\ttime_ms\terrors\toutput\tmessage\n");
+            for (Result result : results) {
+                writer.write(result.getInput().getPath() + '\t' + (result.isOk() ? "ok" : "failed") + '\t'
+                        + result.getNanos() / 1_000_000 + '\t' + result.getErrors() + '\t'
+                        + (result.getOutDir() != null ? result.getOutDir().getPath() : "") + '\t'
+                        + (result.getMessage() != null ? result.getMessage().replaceAll("[\t\r\n]+", " ") : "") + '\n');
+            }
+        }
+    }
+
+    public static class Result {
+        private final File input;
+        private final File outDir;
+        private final boolean ok;
+        private final long nanos;
+        // jadx errors of a finished input
+        private final int errors;
+        private final String message;
+
+        private Result(File input, File outDir, boolean ok, long nanos, int errors, String message) {
+            this.input = input;
+            this.outDir = outDir;
+            this.ok = ok;
+            this.nanos = nanos;
+            this.errors = errors;
+            this.message = message;
+        }
+
+        static Result done(File input, File outDir, long nanos, int errors) {
+            return new Result(input, outDir, true, nanos, errors, null);
+        }
+
+        static Result failed(File input, File outDir, long nanos, Throwable error) {
+            return new Result(input, outDir, false, nanos, 0, String.valueOf(error));
+        }
+
+        public File getInput() {
+            return input;
+        }
+
+        public File getOutDir() {
+            return outDir;
+        }
+
+        public boolean isOk() {
+            return ok;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ConstFold;
+
+import InsnScanner.InsnScanner;
+import InsnScanner.ScanHandler;
+import Interpreter.MethodInterpreter;
+import PassMetrics.PassMetrics;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.ConstStringNode;
+import jadx.core.dex.instructions.InsnType;
+import jadx.core.dex.instructions.InvokeNode;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.InsnWrapArg;
+import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.instructions.args.PrimitiveType;
+import jadx.core.dex.instructions.args.RegisterArg;
+import jadx.core.dex.nodes.BlockNode;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.visitors.AbstractVisitor;
+import jadx.core.utils.BlockUtils;
+import jadx.core.utils.InsnRemover;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces calls of pure methods with constant arguments by their result.
+ * Arguments may be literals, constant strings or results of other pure calls (through registers or wrapped instructions),
+ * so {@code String.valueOf(Character.toChars(65))} is folded to {@code "A"}.
+ * Only calls with a primitive or String result are replaced, pure calls left without use are removed.
+ * <p>
+ * With a {@link MethodInterpreter}, calls of string decryptors of the app are run too and replaced by the decrypted string.
+ */
+public class ConstFoldVisitor extends AbstractVisitor implements ScanHandler<ConstFoldVisitor.FoldState> {
+    // nested pure calls followed for one argument
+    private static final int MAX_DEPTH = 8;
+    // longest string or array made by a folded call
+    private static final int MAX_LENGTH = 4096;
+    private static final Object FAILED = new Object();
+
+    private final PureCallTable table;
+    // runs methods of the app, null if disabled
+    private MethodInterpreter interpreter;
+    private LongAdder folded = new LongAdder();
+
+    public ConstFoldVisitor(PureCallTable table) {
+        this.table = table;
+    }
+
+    public void setMetrics(PassMetrics metrics) {
+        folded = metrics.counter(PassMetrics.CALLS_FOLDED);
+    }
+
+    /**
+     * Also fold calls of app methods returning a String, call before the visitor is added to a scanner.
+     */
+    public void setInterpreter(MethodInterpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public void visit(MethodNode mth) {
+        InsnScanner.scan(mth, this);
+    }
+
+    @Override
+    public Set<InsnType> getInsnTypes() {
+        // decryptors have any name
+        return interpreter != null ? Set.of(InsnType.INVOKE) : Set.of();
+    }
+
+    @Override
+    public Set<String> getCalleeNames() {
+        return table.getNames();
+    }
+
+    @Override
+    public String getCacheKey() {
+        return getClass().getName() + (interpreter != null ? ":interpreter" : "");
+    }
+
+    @Override
+    public FoldState start(MethodNode mth) {
+        return new FoldState();
+    }
+
+    @Override
+    public void handle(MethodNode mth, InsnNode insn, FoldState state) {
+        MethodInfo callMth = ((InvokeNode) insn).getCallMth();
+        if (getFunction(callMth) != null && isConstant(evaluate(insn, state, 0), callMth.getReturnType())) {
+            state.folds.add(insn);
+        }
+    }
+
+    @Override
+    public void finish(MethodNode mth, FoldState state) {
+        List<BlockNode> blocks = mth.getBasicBlocks();
+        if (state.folds.isEmpty() || blocks == null) {
+            return;
+        }
+        Map<InsnNode, Boolean> foldSet = new IdentityHashMap<>();
+        for (InsnNode insn : state.folds) {
+            foldSet.put(insn, Boolean.TRUE);
+        }
+        // replaced calls and evaluated calls, removed below if nothing uses them anymore
+        List<InsnNode> unusedCandidates = new ArrayList<>();
+        for (BlockNode block : blocks) {
+            List<InsnNode> insns = block.getInstructions();
+            for (int i = 0; i < insns.size(); i++) {
+                InsnNode insn = insns.get(i);
+                replaceWrapped(mth, insn, foldSet, state);
+                if (foldSet.containsKey(insn) && insn.getResult() != null) {
+                    InsnNode replaceNode = makeConstInsn(insn, state);
+                    BlockUtils.replaceInsn(mth, block, i, replaceNode);
+                    unusedCandidates.add(replaceNode);
+                    folded.increment();
+                } else if (state.values.containsKey(insn) && state.values.get(insn) != FAILED) {
+                    unusedCandidates.add(insn);
+                }
+            }
+        }
+        List<InsnNode> unused = new ArrayList<>();
+        for (InsnNode insn : unusedCandidates) {
+            RegisterArg result = insn.getResult();
+            if (result == null || result.getSVar().getUseCount() == 0) {
+                unused.add(insn);
+            }
+        }
+        if (!unused.isEmpty()) {
+            InsnRemover.removeAllAndUnbind(mth, unused);
+        }
+    }
+
+    // calls used as arguments of other instructions, inner calls first
+    private void replaceWrapped(MethodNode mth, InsnNode insn, Map<InsnNode, Boolean> foldSet, FoldState state) {
+        for (int i = 0; i < insn.getArgsCount(); i++) {
+            InsnArg arg = insn.getArg(i);
+            if (arg.isInsnWrap()) {
+                InsnNode wrapped = ((InsnWrapArg) arg).getWrapInsn();
+                replaceWrapped(mth, wrapped, foldSet, state);
+                if (foldSet.containsKey(wrapped)) {
+                    InsnNode constInsn = makeConstInsn(wrapped, state);
+                    InsnArg constArg = constInsn.getType() == InsnType.CONST ? constInsn.getArg(0) : InsnArg.wrapInsnIntoArg(constInsn);
+                    insn.replaceArg(arg, constArg);
+                    InsnRemover.unbindAllArgs(mth, wrapped);
+                    folded.increment();
+                }
+            }
+        }
+    }
+
+    private static InsnNode makeConstInsn(InsnNode call, FoldState state) {
+        Object value = state.values.get(call);
+        ArgType type = ((InvokeNode) call).getCallMth().getReturnType();
+        InsnNode constInsn;
+        if (type.equals(ArgType.STRING)) {
+            constInsn = new ConstStringNode((String) value);
+        } else {
+            constInsn = new InsnNode(InsnType.CONST, 1);
+            constInsn.addArg(InsnArg.lit(toLiteral(value), type));
+        }
+        constInsn.setResult(call.getResult());
+        return constInsn;
+    }
+
+    // only strings and primitives can be written as constants
+    private static boolean isConstant(Object value, ArgType type) {
+        return value != FAILED && value != null && (type.equals(ArgType.STRING) || type.isPrimitive());
+    }
+
+    private static long toLiteral(Object value) {
+        long literal;
+        if (value instanceof Boolean) {
+            literal = (Boolean) value ? 1 : 0;
+        } else if (value instanceof Character) {
+            literal = (Character) value;
+        } else if (value instanceof Float) {
+            literal = Float.floatToIntBits((Float) value);
+        } else if (value instanceof Double) {
+            literal = Double.doubleToLongBits((Double) value);
+        } else {
+            literal = ((Number) value).longValue();
+        }
+        return literal;
+    }
+
+    /**
+     * @return result of the call, {@link #FAILED} if it is not a pure call with constant arguments
+     */
+    private Object evaluate(InsnNode insn, FoldState state, int depth) {
+        Object value = state.values.get(insn);
+        if (value != null) {
+            return value;
+        }
+        value = FAILED;
+        // mark first, a call depending on itself through a loop is not folded
+        state.values.put(insn, FAILED);
+        if (depth <= MAX_DEPTH && insn instanceof InvokeNode) {
+            MethodInfo callMth = ((InvokeNode) insn).getCallMth();
+            PureFunction function = getFunction(callMth);
+            if (function != null) {
+                value = call(function, (InvokeNode) insn, callMth, state, depth);
+            }
+        }
+        state.values.put(insn, value);
+        return value;
+    }
+
+    private PureFunction getFunction(MethodInfo callMth) {
+        PureFunction function = table.get(callMth);
+        if (function == null && interpreter != null) {
+            function = interpreter.getFunction(callMth);
+        }
+        return function;
+    }
+
+    private Object call(PureFunction function, InvokeNode insn, MethodInfo callMth, FoldState state, int depth) {
+        int offset = insn.getFirstArgOffset();
+        Object[] args = new Object[insn.getArgsCount()];
+        for (int i = 0; i < args.length; i++) {
+            // 'this' of instance methods has the type of the class
+            ArgType type = i < offset ? callMth.getDeclClass().getType() : callMth.getArgumentsTypes().get(i - offset);
+            args[i] = getArgValue(insn.getArg(i), type, state, depth);
+            if (args[i] == null) {
+                return FAILED;
+            }
+        }
+        Object result;
+        try {
+            result = function.apply(args);
+        } catch (Exception e) {
+            // the call throws at runtime, it stays in the code
+            return FAILED;
+        }
+        if (result == null || result instanceof String && ((String) result).length() > MAX_LENGTH
+                || result.getClass().isArray() && Array.getLength(result) > MAX_LENGTH) {
+            return FAILED;
+        }
+        return result;
+    }
+
+    /**
+     * @return boxed value of the argument, null if it is not constant
+     */
+    private Object getArgValue(InsnArg arg, ArgType type, FoldState state, int depth) {
+        if (arg.isLiteral()) {
+            return fromLiteral(((LiteralArg) arg).getLiteral(), type);
+        }
+        InsnNode insn;
+        if (arg.isInsnWrap()) {
+            insn = ((InsnWrapArg) arg).getWrapInsn();
+        } else if (arg.isRegister()) {
+            insn = ((RegisterArg) arg).getAssignInsn();
+        } else {
+            return null;
+        }
+        if (insn == null) {
+            return null;
+        }
+        switch (insn.getType()) {
+            case CONST:
+                return insn.getArg(0).isLiteral() ? fromLiteral(((LiteralArg) insn.getArg(0)).getLiteral(), type) : null;
+            case CONST_STR:
+                return ((ConstStringNode) insn).getString();
+            case INVOKE:
+                Object value = evaluate(insn, state, depth + 1);
+                return value == FAILED ? null : value;
+            default:
+                return null;
+        }
+    }
+
+    private static Object fromLiteral(long literal, ArgType type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        // literals keep floating point values as raw bits
+        PrimitiveType primitive = type.getPrimitiveType();
+        return switch (primitive) {
+            case BOOLEAN -> literal != 0;
+            case CHAR -> (char) literal;
+            case BYTE -> (byte) literal;
+            case SHORT -> (short) literal;
+            case INT -> (int) literal;
+            case LONG -> literal;
+            case FLOAT -> Float.intBitsToFloat((int) literal);
+            case DOUBLE -> Double.longBitsToDouble(literal);
+            default -> null;
+        };
+    }
+
+    /**
+     * Values of evaluated calls and calls to replace, for one method.
+     */
+    public static class FoldState {
+        final Map<InsnNode, Object> values = new IdentityHashMap<>();
+        final List<InsnNode> folds = new ArrayList<>();
+    }
+}
@@ -0,0 +1,158 @@
+package ConstFold;
+
+import jadx.core.dex.info.ClassInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.RootNode;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pure methods by callee. Keys are the {@link MethodInfo} instances jadx shares for all calls of a method,
+ * so a call is looked up by identity, without comparing names.
+ * <p>
+ * JDK methods are added by reflection with {@link #add(Class, String, Class[])} and evaluated with the JDK,
+ * other methods with {@link #add(MethodInfo, PureFunction)}.
+ */
+public class PureCallTable {
+    private final RootNode root;
+    private final Map<MethodInfo, PureFunction> functions = new IdentityHashMap<>();
+    // names of the methods, for the InsnScanner callee filter
+    private final Set<String> names = new HashSet<>();
+
+    public PureCallTable(RootNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Table with parsing, formatting and bit operations of {@code java.lang}.
+     * Methods depending on the locale or on floating point are left out.
+     */
+    public static PureCallTable createDefault(RootNode root) {
+        PureCallTable table = new PureCallTable(root);
+        table.add(Integer.class, "parseInt", String.class);
+        table.add(Integer.class, "parseInt", String.class, int.class);
+        table.add(Integer.class, "toString", int.class);
+        table.add(Integer.class, "toString", int.class, int.class);
+        table.add(Integer.class, "toHexString", int.class);
+        table.add(Integer.class, "toOctalString", int.class);
+        table.add(Integer.class, "toBinaryString", int.class);
+        table.add(Integer.class, "reverse", int.class);
+        table.add(Integer.class, "reverseBytes", int.class);
+        table.add(Integer.class, "rotateLeft", int.class, int.class);
+        table.add(Integer.class, "rotateRight", int.class, int.class);
+        table.add(Integer.class, "bitCount", int.class);
+        table.add(Integer.class, "highestOneBit", int.class);
+        table.add(Integer.class, "lowestOneBit", int.class);
+        table.add(Integer.class, "numberOfLeadingZeros", int.class);
+        table.add(Integer.class, "numberOfTrailingZeros", int.class);
+        table.add(Long.class, "parseLong", String.class);
+        table.add(Long.class, "parseLong", String.class, int.class);
+        table.add(Long.class, "toString", long.class);
+        table.add(Long.class, "toHexString", long.class);
+        table.add(Long.class, "reverse", long.class);
+        table.add(Long.class, "reverseBytes", long.class);
+        table.add(Long.class, "rotateLeft", long.class, int.class);
+        table.add(Long.class, "rotateRight", long.class, int.class);
+        table.add(Long.class, "bitCount", long.class);
+        table.add(Short.class, "parseShort", String.class);
+        table.add(Byte.class, "parseByte", String.class);
+        table.add(Boolean.class, "parseBoolean", String.class);
+        table.add(Math.class, "abs", int.class);
+        table.add(Math.class, "abs", long.class);
+        table.add(Math.class, "min", int.class, int.class);
+        table.add(Math.class, "max", int.class, int.class);
+        table.add(Math.class, "min", long.class, long.class);
+        table.add(Math.class, "max", long.class, long.class);
+        table.add(Character.class, "toChars", int.class);
+        table.add(Character.class, "isDigit", char.class);
+        table.add(Character.class, "isLetter", char.class);
+        table.add(String.class, "valueOf", int.class);
+        table.add(String.class, "valueOf", long.class);
+        table.add(String.class, "valueOf", char.class);
+        table.add(String.class, "valueOf", boolean.class);
+        table.add(String.class, "valueOf", char[].class);
+        table.add(String.class, "copyValueOf", char[].class);
+        table.add(String.class, "length");
+        table.add(String.class, "charAt", int.class);
+        table.add(String.class, "substring", int.class);
+        table.add(String.class, "substring", int.class, int.class);
+        table.add(String.class, "concat", String.class);
+        table.add(String.class, "trim");
+        table.add(String.class, "replace", char.class, char.class);
+        table.add(String.class, "toCharArray");
+        return table;
+    }
+
+    public void add(MethodInfo mth, PureFunction function) {
+        functions.put(mth, function);
+        names.add(mth.getName());
+    }
+
+    /**
+     * Add a public JDK method, it is called with reflection.
+     */
+    public void add(Class<?> owner, String name, Class<?>... params) {
+        Method method;
+        try {
+            method = owner.getMethod(name, params);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No method " + owner.getName() + '.' + name + Arrays.toString(params), e);
+        }
+        MethodInfo mth = MethodInfo.fromDetails(root, ClassInfo.fromName(root, owner.getName()),
+                name, toArgTypes(params), ArgType.parse(method.getReturnType().descriptorString()));
+        if (Modifier.isStatic(method.getModifiers())) {
+            add(mth, args -> method.invoke(null, args));
+        } else {
+            add(mth, args -> method.invoke(args[0], Arrays.copyOfRange(args, 1, args.length)));
+        }
+    }
+
+    /**
+     * Add a public JDK constructor. The function gets the object being created as first argument (it is not used)
+     * and returns the new object.
+     */
+    public void addConstructor(Class<?> owner, Class<?>... params) {
+        Constructor<?> constructor;
+        try {
+            constructor = owner.getConstructor(params);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No constructor " + owner.getName() + Arrays.toString(params), e);
+        }
+        MethodInfo mth = MethodInfo.fromDetails(root, ClassInfo.fromName(root, owner.getName()),
+                "<init>", toArgTypes(params), ArgType.VOID);
+        add(mth, args -> constructor.newInstance(Arrays.copyOfRange(args, 1, args.length)));
+    }
+
+    private static List<ArgType> toArgTypes(Class<?>[] params) {
+        List<ArgType> argTypes = new ArrayList<>(params.length);
+        for (Class<?> param : params) {
+            argTypes.add(ArgType.parse(param.descriptorString()));
+        }
+        return argTypes;
+    }
+
+    /**
+     * @return function of the called method, null if it is not in the table
+     */
+    public PureFunction get(MethodInfo mth) {
+        return functions.get(mth);
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return functions.size();
+    }
+}
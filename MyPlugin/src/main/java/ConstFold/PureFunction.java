@@ -0,0 +1,14 @@
+package ConstFold;
+
+/**
+ * Function without side effects, evaluated at decompile time.
+ */
+@FunctionalInterface
+public interface PureFunction {
+    /**
+     * @param args boxed arguments, {@code this} first for instance methods
+     * @return result, null if the call can't be folded
+     * @throws Exception if the call would throw, it is not folded then
+     */
+    Object apply(Object[] args) throws Exception;
+}
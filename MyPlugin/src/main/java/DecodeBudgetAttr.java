@@ -0,0 +1,47 @@
+import jadx.api.plugins.input.data.attributes.IJadxAttrType;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.core.dex.nodes.ClassNode;
+
+/**
+ * Decoding work already done for strings of one class.
+ * Kept as class attribute, so it is reset when the class is reloaded.
+ */
+public class DecodeBudgetAttr implements IJadxAttribute {
+    public static final IJadxAttrType<DecodeBudgetAttr> TYPE = new IJadxAttrType<>() {
+    };
+
+    private long chars;
+    private long nanos;
+
+    public static DecodeBudgetAttr get(ClassNode classNode) {
+        DecodeBudgetAttr budget = classNode.get(TYPE);
+        if (budget == null) {
+            budget = new DecodeBudgetAttr();
+            classNode.addAttr(budget);
+        }
+        return budget;
+    }
+
+    public void add(long decodedChars, long spentNanos) {
+        chars += decodedChars;
+        nanos += spentNanos;
+    }
+
+    public long getChars() {
+        return chars;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public IJadxAttrType<DecodeBudgetAttr> getAttrType() {
+        return TYPE;
+    }
+
+    @Override
+    public String toAttrString() {
+        return "DECODE_BUDGET chars: " + chars + ", time: " + nanos / 1_000_000 + "ms";
+    }
+}
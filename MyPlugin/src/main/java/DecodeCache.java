@@ -0,0 +1,128 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Decoded chains of constant strings, shared by all classes of one decompiled APK.
+ * Chains are packed in the {@link DecodeStore} of the cache, which keeps their strings for the whole run.
+ * Size is bounded by the number of chars in keys and ints in chains, oldest entries are evicted first;
+ * strings of evicted chains stay in the store, which has a cap of its own.
+ */
+public class DecodeCache {
+    public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+    // rough cost of the map entry and array objects, in chars
+    private static final int ENTRY_WEIGHT = 32;
+
+    private final long maxWeight;
+    private final DecodeStore store;
+    private final Map<String, int[]> entries;
+    private final Queue<String> order;
+    private final AtomicLong weight;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    public DecodeCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    public DecodeCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        this.store = new DecodeStore();
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.weight = new AtomicLong();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    public DecodeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Get packed decoded chain of the string, decode it with {@code loader} on miss.
+     * Returned array is shared and must not be changed.
+     */
+    public int[] get(String str, Function<String, List<DecodeVisitor.DecodeNode>> loader) {
+        int[] chain = entries.get(str);
+        if (chain != null) {
+            hits.increment();
+            return chain;
+        }
+        misses.increment();
+        List<DecodeVisitor.DecodeNode> nodes = loader.apply(str);
+        chain = store.add(nodes);
+        if (chain.length == 0 && !nodes.isEmpty()) {
+            // store is full, the result is dropped and not cached
+            return chain;
+        }
+        int[] prev = entries.putIfAbsent(str, chain);
+        if (prev != null) {
+            // decoded by another thread at the same time
+            return prev;
+        }
+        order.add(str);
+        if (weight.addAndGet(weigh(str, chain)) > maxWeight) {
+            evict();
+        }
+        return chain;
+    }
+
+    private void evict() {
+        while (weight.get() > maxWeight) {
+            String oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            int[] chain = entries.remove(oldest);
+            if (chain != null) {
+                weight.addAndGet(-weigh(oldest, chain));
+                evictions.increment();
+            }
+        }
+    }
+
+    private static long weigh(String str, int[] chain) {
+        return ENTRY_WEIGHT + str.length() + chain.length * 2L;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    // strings of the store are kept, chains handed out before still use them
+    public void clear() {
+        entries.clear();
+        order.clear();
+        weight.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeCache{size=" + size() + ", weight=" + getWeight() + ", stored=" + store.getByteCount()
+                + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + '}';
+    }
+}
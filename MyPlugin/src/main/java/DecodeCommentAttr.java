@@ -0,0 +1,89 @@
+import jadx.api.plugins.input.data.attributes.IJadxAttrType;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.core.dex.attributes.AType;
+import jadx.core.dex.attributes.IAttributeNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded strings to show as comments of a method, or of a class for strings of its constructors.
+ * Only original strings and packed chains are kept, the comment text is built by {@link DecodeCommentVisitor}
+ * right before code generation.
+ */
+public class DecodeCommentAttr implements IJadxAttribute {
+    public static final IJadxAttrType<DecodeCommentAttr> TYPE = new IJadxAttrType<>() {
+    };
+
+    // one comment per scanned method, each with its original strings and their chains
+    private final List<String[]> originals = new ArrayList<>(1);
+    private final List<int[][]> chains = new ArrayList<>(1);
+
+    /**
+     * Add one comment, strings not decoded are left out.
+     */
+    public static void add(IAttributeNode node, Map<String, int[]> decoded) {
+        DecodeCommentAttr attr = node.get(TYPE);
+        if (attr == null) {
+            attr = new DecodeCommentAttr();
+            node.addAttr(attr);
+        }
+        int count = 0;
+        for (int[] chain : decoded.values()) {
+            if (chain.length != 0) {
+                count++;
+            }
+        }
+        String[] strings = new String[count];
+        int[][] packed = new int[count][];
+        int i = 0;
+        for (Map.Entry<String, int[]> entry : decoded.entrySet()) {
+            if (entry.getValue().length != 0) {
+                strings[i] = entry.getKey();
+                packed[i] = entry.getValue();
+                i++;
+            }
+        }
+        attr.originals.add(strings);
+        attr.chains.add(packed);
+    }
+
+    /**
+     * Replace the attribute of the node with comments jadx writes to the code.
+     */
+    public static void addComments(IAttributeNode node, DecodeStore store) {
+        DecodeCommentAttr attr = node.get(TYPE);
+        if (attr == null) {
+            return;
+        }
+        node.remove(TYPE);
+        for (int i = 0; i < attr.originals.size(); i++) {
+            StringBuilder comment = new StringBuilder();
+            if (node instanceof MethodNode) {
+                comment.append("Strings Decode at method ").append(((MethodNode) node).getAlias()).append(":\n");
+            } else {
+                comment.append("Strings Decode at constructor:\n");
+            }
+            String[] strings = attr.originals.get(i);
+            int[][] packed = attr.chains.get(i);
+            for (int j = 0; j < strings.length; j++) {
+                comment.append(strings[j]);
+                store.appendChain(comment, packed[j]);
+                comment.append("\n");
+            }
+            node.addAttr(AType.CODE_COMMENTS, comment.toString());
+        }
+    }
+
+    @Override
+    public IJadxAttrType<DecodeCommentAttr> getAttrType() {
+        return TYPE;
+    }
+
+    @Override
+    public String toAttrString() {
+        return "DECODE_COMMENT comments: " + originals.size();
+    }
+}
@@ -0,0 +1,29 @@
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.visitors.AbstractVisitor;
+
+/**
+ * Build the comments of decoded strings from their {@link DecodeCommentAttr}, run as the last pass
+ * so the text only exists while the class is generated and uses the final method names.
+ * <p>
+ * Methods are visited from their class: DepthTraversal skips methods with errors, their comments are still added.
+ */
+public class DecodeCommentVisitor extends AbstractVisitor {
+    private final DecodeStore store;
+
+    public DecodeCommentVisitor(DecodeStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean visit(ClassNode cls) {
+        DecodeCommentAttr.addComments(cls, store);
+        for (ClassNode inner : cls.getInnerClasses()) {
+            visit(inner);
+        }
+        for (MethodNode mth : cls.getMethods()) {
+            DecodeCommentAttr.addComments(mth, store);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Multi-layer decoding of one string.
+ * Layers are explored breadth-first, every decoded value is expanded only once and
+ * the search stops at the maximum depth or when the size or work budget of the string is used up.
+ * Both budgets count chars, not time, so a string always gets the same result and it can be cached.
+ * Results are returned in the order of a depth-first walk: each decoded value is followed by its own layers.
+ * <p>
+ * Each value is classified once, then only decoders accepting its kinds are called, cheapest first.
+ * Speculative decoders are skipped once a value was decoded by another decoder.
+ */
+public class DecodeEngine {
+    public static final int DEFAULT_MAX_DEPTH = 8;
+    public static final int DEFAULT_MAX_STRING_CHARS = 64 * 1024;
+    public static final int DEFAULT_MAX_STRING_WORK = 256 * 1024;
+    public static final long DEFAULT_MAX_CLASS_CHARS = 1024 * 1024;
+    public static final long DEFAULT_MAX_CLASS_MILLIS = 1000;
+
+    private final int maxDepth;
+    private final int maxStringChars;
+    private final int maxStringWork;
+    private final long maxClassChars;
+    private final long maxClassNanos;
+    private final StringDecoder[] decoders;
+    // kinds accepted by at least one decoder
+    private final int kinds;
+
+    public DecodeEngine() {
+        this(Arrays.asList(DecodeVisitor.DecodeType.values()));
+    }
+
+    public DecodeEngine(List<? extends StringDecoder> decoders) {
+        this(decoders, DEFAULT_MAX_DEPTH, DEFAULT_MAX_STRING_CHARS, DEFAULT_MAX_STRING_WORK, DEFAULT_MAX_CLASS_CHARS, DEFAULT_MAX_CLASS_MILLIS);
+    }
+
+    /**
+     * @param decoders        decoders to use, in any order
+     * @param maxDepth        maximum number of nested layers
+     * @param maxStringChars  maximum length of all decoded values of one string
+     * @param maxStringWork   maximum length of all values given to decoders for one string
+     * @param maxClassChars   maximum length of all decoded values in one class
+     * @param maxClassMillis  maximum time spent on decoding strings of one class
+     */
+    public DecodeEngine(List<? extends StringDecoder> decoders, int maxDepth, int maxStringChars,
+                        int maxStringWork, long maxClassChars, long maxClassMillis) {
+        this.decoders = decoders.toArray(new StringDecoder[0]);
+        // stable sort keeps the given order of decoders with the same cost
+        Arrays.sort(this.decoders, Comparator.comparingInt(StringDecoder::getCost));
+        int allKinds = 0;
+        for (StringDecoder decoder : this.decoders) {
+            allKinds |= decoder.getKinds();
+        }
+        this.kinds = allKinds;
+        this.maxDepth = maxDepth;
+        this.maxStringChars = maxStringChars;
+        this.maxStringWork = maxStringWork;
+        this.maxClassChars = maxClassChars;
+        this.maxClassNanos = maxClassMillis * 1_000_000;
+    }
+
+    public List<DecodeVisitor.DecodeNode> decode(String s) {
+        // decode tree, node 0 is the original string
+        ArrayList<DecodeVisitor.DecodeNode> nodes = new ArrayList<>();
+        ArrayList<String> values = new ArrayList<>();
+        int[] depths = new int[16];
+        // children of a node are added together, so they are the range [first, first + count)
+        int[] firstChild = new int[16];
+        int[] childCount = new int[16];
+        Set<String> visited = new HashSet<>();
+
+        nodes.add(null);
+        values.add(s);
+        visited.add(s);
+
+        int chars = 0;
+        int work = 0;
+        boolean budgetLeft = true;
+        for (int head = 0; head < values.size() && budgetLeft; head++) {
+            int depth = depths[head];
+            String value = values.get(head);
+            if (depth >= maxDepth || value == null) {
+                continue;
+            }
+            int valueKinds = StringClassifier.classify(value) & kinds;
+            if (valueKinds == 0) {
+                continue;
+            }
+            firstChild[head] = nodes.size();
+            for (StringDecoder decoder : decoders) {
+                if ((valueKinds & decoder.getKinds()) == 0
+                        || (decoder.isSpeculative() && childCount[head] != 0)) {
+                    continue;
+                }
+                work += value.length();
+                if (work > maxStringWork) {
+                    budgetLeft = false;
+                    break;
+                }
+                String decoded = decoder.decode(value);
+                if (decoded == null || decoded.isEmpty()) {
+                    continue;
+                }
+                chars += decoded.length();
+                if (chars > maxStringChars) {
+                    budgetLeft = false;
+                    break;
+                }
+                int node = nodes.size();
+                if (node == depths.length) {
+                    depths = Arrays.copyOf(depths, node * 2);
+                    firstChild = Arrays.copyOf(firstChild, node * 2);
+                    childCount = Arrays.copyOf(childCount, node * 2);
+                }
+                nodes.add(new DecodeVisitor.DecodeNode(decoder, decoded));
+                // already seen values are shown but not decoded again
+                values.add(visited.add(decoded) ? decoded : null);
+                depths[node] = depth + 1;
+                childCount[head]++;
+            }
+        }
+
+        ArrayList<DecodeVisitor.DecodeNode> result = new ArrayList<>(nodes.size() - 1);
+        addSubtree(0, nodes, firstChild, childCount, result);
+        return result;
+    }
+
+    private static void addSubtree(int node, List<DecodeVisitor.DecodeNode> nodes,
+                                   int[] firstChild, int[] childCount,
+                                   List<DecodeVisitor.DecodeNode> result) {
+        int first = firstChild[node];
+        int count = childCount[node];
+        for (int child = first; child < first + count; child++) {
+            result.add(nodes.get(child));
+            addSubtree(child, nodes, firstChild, childCount, result);
+        }
+    }
+
+    /**
+     * @param kinds result of {@link StringClassifier#classify(String)}
+     * @return false if no decoder accepts a string of these kinds
+     */
+    public boolean accepts(int kinds) {
+        return (kinds & this.kinds) != 0;
+    }
+
+    public boolean isClassBudgetLeft(DecodeBudgetAttr budget) {
+        return budget.getChars() < maxClassChars && budget.getNanos() < maxClassNanos;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return decoder with the given {@link StringDecoder#getName()}, null if not used by this engine
+     */
+    public StringDecoder getDecoder(String name) {
+        for (StringDecoder decoder : decoders) {
+            if (decoder.getName().equals(name)) {
+                return decoder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decoders and limits, results of an engine with other options are not reused.
+     */
+    public String getCacheKey() {
+        StringBuilder key = new StringBuilder();
+        for (StringDecoder decoder : decoders) {
+            key.append(decoder.getName()).append(',');
+        }
+        return key.append(maxDepth).append(',').append(maxStringChars).append(',').append(maxStringWork)
+                .append(',').append(maxClassChars).append(',').append(maxClassNanos).toString();
+    }
+}
@@ -0,0 +1,198 @@
+import jadx.core.dex.nodes.MethodNode;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JSON lines report of decoded strings, written while classes are processed.
+ * One line per decoded string:
+ * <pre>{"class":"a.b.C","method":"m(I)V","original":"...","chain":[{"codec":"Base64","result":"..."}]}</pre>
+ * Strings are only JSON escaped, {@code result} is the decoded value itself.
+ * Lines are passed to a background writer through a bounded queue,
+ * decompilation threads wait only if the writer can't keep up.
+ * Lines added after {@link #close()}, after the writer thread stopped or by an interrupted thread
+ * are dropped and counted by {@link #getDropped()} instead of blocking forever.
+ */
+public class DecodeReport implements Closeable {
+    public static final int DEFAULT_CAPACITY = 4096;
+    // marks the end of the queue, compared by identity
+    private static final String END = new String("");
+    // how often a waiting producer checks that the writer is still running
+    private static final long OFFER_WAIT_MS = 100;
+
+    private final BlockingQueue<String> queue;
+    private final Writer writer;
+    private final Thread writerThread;
+    private volatile IOException error;
+    // set by close() and when the writer thread ends, no more lines are taken
+    private volatile boolean stopped;
+    private final LongAdder dropped = new LongAdder();
+    private boolean closed;
+
+    public DecodeReport(File file) throws IOException {
+        this(newWriter(file), DEFAULT_CAPACITY);
+    }
+
+    public DecodeReport(Writer writer, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        this.writerThread = new Thread(this::writeLines, "decode-report");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * @param chain packed in {@code store}
+     */
+    public void add(MethodNode mth, String original, int[] chain, DecodeStore store) {
+        if (stopped) {
+            dropped.increment();
+            return;
+        }
+        StringBuilder sb = new StringBuilder(64 + original.length());
+        sb.append("{\"class\":");
+        appendJsonString(sb, mth.getParentClass().getFullName());
+        sb.append(",\"method\":");
+        appendJsonString(sb, mth.getMethodInfo().getShortId());
+        sb.append(",\"original\":");
+        appendJsonString(sb, original);
+        sb.append(",\"chain\":[");
+        for (int i = 0; i < DecodeStore.size(chain); i++) {
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append("{\"codec\":");
+            appendJsonString(sb, store.getDecoder(chain, i).getName());
+            sb.append(",\"result\":");
+            appendJsonString(sb, store.getResult(chain, i));
+            sb.append('}');
+        }
+        sb.append("]}");
+        String line = sb.toString();
+        try {
+            while (!queue.offer(line, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    dropped.increment();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            dropped.increment();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return lines not written because the report was closed, its writer stopped or the adding thread was interrupted
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void writeLines() {
+        try {
+            while (true) {
+                String line = queue.take();
+                if (line == END) {
+                    break;
+                }
+                // after an error lines are still taken, so producers are never blocked
+                if (error == null) {
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                        // let readers of the file see finished lines while the queue is idle
+                        if (queue.isEmpty()) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+        }
+    }
+
+    /**
+     * Wait for queued lines to be written and close the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        stopped = true;
+        try {
+            // the writer may have stopped with a full queue
+            while (!queue.offer(END, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (!writerThread.isAlive()) {
+                    break;
+                }
+            }
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // lines the writer didn't take before it stopped
+        String line;
+        while ((line = queue.poll()) != null) {
+            if (line != END) {
+                dropped.increment();
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static Writer newWriter(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,49 @@
+import jadx.api.plugins.input.data.attributes.IJadxAttrType;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.core.dex.nodes.ClassNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded strings of each method of one class, collected while the class is scanned to be stored in the result cache.
+ */
+public class DecodeResultAttr implements IJadxAttribute {
+    public static final IJadxAttrType<DecodeResultAttr> TYPE = new IJadxAttrType<>() {
+    };
+
+    // method short id -> original string -> packed decode chain
+    private final Map<String, Map<String, int[]>> methods = new LinkedHashMap<>();
+    // a string came from a constant field of another class, not covered by the fingerprint of this class
+    private boolean foreignConstants;
+
+    public static void start(ClassNode classNode) {
+        classNode.addAttr(new DecodeResultAttr());
+    }
+
+    public void add(String methodShortId, Map<String, int[]> decoded) {
+        methods.put(methodShortId, decoded);
+    }
+
+    public Map<String, Map<String, int[]>> getMethods() {
+        return methods;
+    }
+
+    public void setForeignConstants() {
+        foreignConstants = true;
+    }
+
+    public boolean hasForeignConstants() {
+        return foreignConstants;
+    }
+
+    @Override
+    public IJadxAttrType<DecodeResultAttr> getAttrType() {
+        return TYPE;
+    }
+
+    @Override
+    public String toAttrString() {
+        return "DECODE_RESULT methods: " + methods.size();
+    }
+}
@@ -0,0 +1,269 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decoded strings of one APK, kept as UTF-8 bytes in large shared chunks instead of one {@code String} each.
+ * Equal strings are stored once and get the same id.
+ * <p>
+ * A decode chain is packed in an {@code int[]} of decoder id and string id pairs, in the order of
+ * {@link DecodeEngine#decode(String)}. Strings are split by hash into stripes with a lock each,
+ * so threads decoding different strings rarely wait for each other.
+ * <p>
+ * Strings are only added, ids stay valid for the whole run: chains evicted from the {@link DecodeCache}
+ * may still be used by comments and results of scanned classes. Growth is capped instead, after
+ * {@code maxBytes} new chains are dropped and counted by {@link #getDropped()}.
+ */
+public class DecodeStore {
+    public static final int[] EMPTY_CHAIN = new int[0];
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPE_MASK = (1 << STRIPE_BITS) - 1;
+    private static final int CHUNK_SIZE = 1 << 18;
+    // longer strings get a chunk of their own, so chunks are not left half empty
+    private static final int MAX_SHARED_LENGTH = CHUNK_SIZE / 16;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final long maxBytes;
+    private final AtomicLong byteCount = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    // decoder id -> decoder, a few entries
+    private final List<StringDecoder> decoders = new CopyOnWriteArrayList<>();
+
+    public DecodeStore() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes UTF-8 bytes of all stored strings
+     */
+    public DecodeStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Pack the chain, its strings are added to the store.
+     *
+     * @return packed chain, empty if the store is full
+     */
+    public int[] add(List<DecodeVisitor.DecodeNode> chain) {
+        if (chain.isEmpty()) {
+            return EMPTY_CHAIN;
+        }
+        int[] packed = new int[chain.size() * 2];
+        for (int i = 0; i < chain.size(); i++) {
+            DecodeVisitor.DecodeNode node = chain.get(i);
+            int id = intern(node.getDecodeString());
+            if (id < 0) {
+                dropped.increment();
+                return EMPTY_CHAIN;
+            }
+            packed[i * 2] = getDecoderId(node.getType());
+            packed[i * 2 + 1] = id;
+        }
+        return packed;
+    }
+
+    private int getDecoderId(StringDecoder decoder) {
+        int id = decoders.indexOf(decoder);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (decoders) {
+            id = decoders.indexOf(decoder);
+            if (id < 0) {
+                decoders.add(decoder);
+                id = decoders.size() - 1;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return id of the string, the same for equal strings; -1 if the store is full
+     */
+    public int intern(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int hash = Arrays.hashCode(bytes);
+        // low bits pick the stripe, the others its slot
+        int stripe = (hash ^ hash >>> 16) & STRIPE_MASK;
+        int id = stripes[stripe].intern(bytes, hash);
+        return id < 0 ? -1 : id << STRIPE_BITS | stripe;
+    }
+
+    public String getString(int id) {
+        return stripes[id & STRIPE_MASK].getString(id >>> STRIPE_BITS);
+    }
+
+    /**
+     * @return number of decoded strings in the chain
+     */
+    public static int size(int[] chain) {
+        return chain.length / 2;
+    }
+
+    public StringDecoder getDecoder(int[] chain, int index) {
+        return decoders.get(chain[index * 2]);
+    }
+
+    public String getResult(int[] chain, int index) {
+        return getString(chain[index * 2 + 1]);
+    }
+
+    /**
+     * @return UTF-8 length of all decoded strings of the chain
+     */
+    public long getLength(int[] chain) {
+        long length = 0;
+        for (int i = 1; i < chain.length; i += 2) {
+            length += stripes[chain[i] & STRIPE_MASK].getLength(chain[i] >>> STRIPE_BITS);
+        }
+        return length;
+    }
+
+    /**
+     * Append the chain as {@code " --Base64-> result"} for each layer.
+     */
+    public void appendChain(StringBuilder sb, int[] chain) {
+        for (int i = 0; i < size(chain); i++) {
+            // results are kept as decoded, escaped only for the comment
+            sb.append(" --").append(getDecoder(chain, i).getName()).append("-> ")
+                    .append(MyPlugin.addEscapeCharacters(getResult(chain, i)));
+        }
+    }
+
+    public int size() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    public long getByteCount() {
+        return byteCount.get();
+    }
+
+    /**
+     * @return chains not stored because the store was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Strings of one hash stripe, guarded by its own lock.
+     */
+    private final class Stripe {
+        private final List<byte[]> chunks = new ArrayList<>();
+        // chunk short strings are appended to, dedicated chunks may follow it in the list
+        private int sharedChunk = -1;
+        private int sharedUsed = CHUNK_SIZE;
+        // chunk index, offset, length and hash of each string id
+        private int[] chunkIndexes = new int[64];
+        private int[] offsets = new int[64];
+        private int[] lengths = new int[64];
+        private int[] hashes = new int[64];
+        private int count;
+        // open addressing, id + 1 or 0 for an empty slot
+        private int[] table = new int[128];
+
+        synchronized int intern(byte[] bytes, int hash) {
+            int mask = table.length - 1;
+            int slot = (hash >>> STRIPE_BITS) & mask;
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (hashes[id] == hash && equalsAt(id, bytes)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (byteCount.addAndGet(bytes.length) > maxBytes) {
+                byteCount.addAndGet(-bytes.length);
+                return -1;
+            }
+            int id = append(bytes, hash);
+            table[slot] = id + 1;
+            if (count * 2 > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private boolean equalsAt(int id, byte[] bytes) {
+            int offset = offsets[id];
+            return lengths[id] == bytes.length
+                    && Arrays.equals(chunks.get(chunkIndexes[id]), offset, offset + bytes.length, bytes, 0, bytes.length);
+        }
+
+        private int append(byte[] bytes, int hash) {
+            if (count == offsets.length) {
+                int size = count * 2;
+                chunkIndexes = Arrays.copyOf(chunkIndexes, size);
+                offsets = Arrays.copyOf(offsets, size);
+                lengths = Arrays.copyOf(lengths, size);
+                hashes = Arrays.copyOf(hashes, size);
+            }
+            int id = count++;
+            if (bytes.length > MAX_SHARED_LENGTH) {
+                chunks.add(bytes);
+                chunkIndexes[id] = chunks.size() - 1;
+                offsets[id] = 0;
+            } else {
+                if (sharedUsed + bytes.length > CHUNK_SIZE) {
+                    chunks.add(new byte[CHUNK_SIZE]);
+                    sharedChunk = chunks.size() - 1;
+                    sharedUsed = 0;
+                }
+                System.arraycopy(bytes, 0, chunks.get(sharedChunk), sharedUsed, bytes.length);
+                chunkIndexes[id] = sharedChunk;
+                offsets[id] = sharedUsed;
+                sharedUsed += bytes.length;
+            }
+            lengths[id] = bytes.length;
+            hashes[id] = hash;
+            return id;
+        }
+
+        private void rehash() {
+            int[] newTable = new int[table.length * 2];
+            int mask = newTable.length - 1;
+            for (int id = 0; id < count; id++) {
+                int slot = (hashes[id] >>> STRIPE_BITS) & mask;
+                while (newTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newTable[slot] = id + 1;
+            }
+            table = newTable;
+        }
+
+        String getString(int id) {
+            byte[] chunk;
+            int offset;
+            int length;
+            synchronized (this) {
+                chunk = chunks.get(chunkIndexes[id]);
+                offset = offsets[id];
+                length = lengths[id];
+            }
+            // written bytes never change, they are read outside of the lock
+            return new String(chunk, offset, length, StandardCharsets.UTF_8);
+        }
+
+        synchronized int getLength(int id) {
+            return lengths[id];
+        }
+
+        synchronized int size() {
+            return count;
+        }
+    }
+}
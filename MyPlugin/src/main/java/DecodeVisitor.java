@@ -1,43 +1,97 @@
-import jadx.api.CommentsLevel;
-import jadx.core.dex.attributes.AType;
-import jadx.core.dex.attributes.IAttributeNode;
-import jadx.core.dex.attributes.nodes.JadxCommentsAttr;
+import InsnScanner.CachedScanHandler;
+import InsnScanner.InsnScanner;
+import PassMetrics.PassMetrics;
+import ResultCache.ClassResultCache;
+import jadx.api.plugins.input.data.annotations.EncodedType;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.core.dex.info.FieldInfo;
 import jadx.core.dex.instructions.ConstStringNode;
+import jadx.core.dex.instructions.IndexInsnNode;
 import jadx.core.dex.instructions.InsnType;
 import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
 import jadx.core.dex.nodes.InsnNode;
 import jadx.core.dex.nodes.MethodNode;
 import jadx.core.dex.visitors.AbstractVisitor;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
 
-public class DecodeVisitor extends AbstractVisitor {
-    private static final Pattern base64Pattern = Pattern.compile("^(?:[A-Za-z0-9+/]{4})*(?:[A-Za-z0-9+/]{2}==|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{4})$");
-    private static final Pattern UrlPattern = Pattern.compile("%[0-9A-Fa-f]{2}");
-    private static final Pattern UnicodePattern = Pattern.compile("\\\\u([0-9A-Fa-f]{4})+");
-    public enum DecodeType {
-        BASE64,
-        URL,
-        UNICODE
+public class DecodeVisitor extends AbstractVisitor implements CachedScanHandler<ArrayList<String>> {
+    // built-in decoders, more can be passed to the DecodeEngine
+    public enum DecodeType implements StringDecoder {
+        BASE64("Base64", StringClassifier.BASE64, 3, false, StringDecoders::base64),
+        URL("Url", StringClassifier.URL, 2, false, StringDecoders::url),
+        UNICODE("Unicode", StringClassifier.UNICODE, 2, false, StringDecoders::unicode),
+        HEX("Hex", StringClassifier.HEX, 1, false, StringDecoders::hex),
+        GZIP_BASE64("Gzip", StringClassifier.GZIP, 5, false, StringDecoders::gzipBase64),
+        ROT("Rot", StringClassifier.ROTATED, 6, true, StringDecoders::rot),
+        XOR("Xor", StringClassifier.BINARY, 8, true, StringDecoders::xor);
+
+        private final String name;
+        private final int kinds;
+        private final int cost;
+        private final boolean speculative;
+        private final UnaryOperator<String> decoder;
+
+        DecodeType(String name, int kinds, int cost, boolean speculative, UnaryOperator<String> decoder) {
+            this.name = name;
+            this.kinds = kinds;
+            this.cost = cost;
+            this.speculative = speculative;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getKinds() {
+            return kinds;
+        }
+
+        @Override
+        public int getCost() {
+            return cost;
+        }
+
+        @Override
+        public boolean isSpeculative() {
+            return speculative;
+        }
+
+        @Override
+        public String decode(String s) {
+            return decoder.apply(s);
+        }
     }
 
     public static class DecodeNode {
-        private final DecodeType type;
+        private final StringDecoder type;
         private final String decodeString;
 
-        public DecodeNode(DecodeType type, String str) {
+        public DecodeNode(StringDecoder type, String str) {
             this.type = type;
             this.decodeString = str;
         }
 
-        public DecodeType getType() {
+        public StringDecoder getType() {
             return this.type;
         }
 
@@ -45,153 +99,269 @@ public class DecodeVisitor extends AbstractVisitor {
             return this.decodeString;
         }
     }
+    // decoded strings of the whole APK
+    private final DecodeCache cache;
+    // strings of the packed chains, from the cache
+    private final DecodeStore store;
+    private final DecodeEngine engine;
+    // optional JSONL report, null if disabled
+    private final DecodeReport report;
+    // classes using strings the decoders accept, null to scan all classes
+    private StringPrescan prescan;
+    private LongAdder scanned = new LongAdder();
+    private LongAdder decodedCount = new LongAdder();
+    private LongAdder replayed = new LongAdder();
+
+    public DecodeVisitor() {
+        this(new DecodeCache(), new DecodeEngine(), null);
+    }
+
+    public DecodeVisitor(DecodeCache cache, DecodeEngine engine) {
+        this(cache, engine, null);
+    }
+
+    public DecodeVisitor(DecodeCache cache, DecodeEngine engine, DecodeReport report) {
+        this.cache = cache;
+        this.store = cache.getStore();
+        this.engine = engine;
+        this.report = report;
+    }
+
+    /**
+     * Skip methods of classes without a string the decoders accept, the prescan must use the same engine.
+     */
+    public void setPrescan(StringPrescan prescan) {
+        this.prescan = prescan;
+    }
+
+    public DecodeCache getCache() {
+        return cache;
+    }
+    public DecodeStore getStore() {
+        return store;
+    }
+    /**
+     * Pass building the comments of the decoded strings, to run after all other passes.
+     */
+    public DecodeCommentVisitor createCommentVisitor() {
+        return new DecodeCommentVisitor(store);
+    }
+    public void setMetrics(PassMetrics metrics) {
+        scanned = metrics.counter(PassMetrics.STRINGS_SCANNED);
+        decodedCount = metrics.counter(PassMetrics.STRINGS_DECODED);
+        replayed = metrics.counter(PassMetrics.STRINGS_REPLAYED);
+        metrics.gauge("decode.cache.hits", cache::getHits);
+        metrics.gauge("decode.cache.misses", cache::getMisses);
+        metrics.gauge("decode.store.strings", store::size);
+        metrics.gauge("decode.store.bytes", store::getByteCount);
+        metrics.gauge("decode.store.dropped", store::getDropped);
+        if (report != null) {
+            metrics.gauge("decode.report.dropped", report::getDropped);
+        }
+        if (prescan != null) {
+            metrics.gauge("decode.prescan.strings", prescan::getStringCount);
+            metrics.gauge("decode.prescan.candidates", prescan::getCandidateCount);
+            metrics.gauge("decode.prescan.classes", prescan::getCandidateClassCount);
+        }
+    }
     @Override
-    public boolean visit(ClassNode classNode) {
-        for (MethodNode methodNode : classNode.getMethods()) {
-            if (methodNode == null)
-                continue;
-            // get strings
-            ArrayList<String> strings = getStringFromMethod(methodNode);
-            if (!strings.isEmpty()) {
-                // constructor method
-                if (methodNode.isConstructor()) {
-                    addDecodeComments(classNode, decode(strings));
-                } else {
-                    addDecodeComments(methodNode, decode(strings));
-                }
-            }
+    public void visit(MethodNode mth) {
+        InsnScanner.scan(mth, this);
+    }
+    @Override
+    public Set<InsnType> getInsnTypes() {
+        // string literals and reads of static String fields with a constant value
+        return Set.of(InsnType.CONST_STR, InsnType.SGET);
+    }
+    @Override
+    public Set<String> getCalleeNames() {
+        return Set.of();
+    }
+    @Override
+    public ArrayList<String> start(MethodNode mth) {
+        if (prescan != null && !prescan.isCandidate(mth.getParentClass())) {
+            return null;
         }
-        return true;
+        return new ArrayList<>();
     }
-    private HashMap<String, ArrayList<DecodeNode>> decode(ArrayList<String> strings) {
-        HashMap<String, ArrayList<DecodeNode>> stringMap = new HashMap<>();
-        for (String s : strings) {
-            ArrayList<DecodeNode> decodeList = new ArrayList<>();
-            decodeString(s, decodeList);
-            stringMap.put(s, decodeList);
+    @Override
+    public void handle(MethodNode mth, InsnNode insnNode, ArrayList<String> strings) {
+        // get string
+        String s = getString(mth, insnNode);
+        if (s != null && !Objects.equals(s, "")) {
+            strings.add(s);
+            scanned.increment();
         }
-        return stringMap;
     }
-    private void decodeString(String s, ArrayList<DecodeNode> nodes) {
-        // decode Base64
-        Matcher base64Matcher = base64Pattern.matcher(s);
-        if (base64Matcher.find()) {
-            String encodeBase64 = base64Matcher.group();
-            String decodeBase64 = decodeBase64(encodeBase64);
-            if (decodeBase64 != null) {
-                nodes.add(new DecodeNode(DecodeType.BASE64, decodeBase64));
-                decodeString(decodeBase64, nodes);
+    @Override
+    public void finish(MethodNode mth, ArrayList<String> strings) {
+        if (!strings.isEmpty()) {
+            HashMap<String, int[]> decoded = decode(mth.getParentClass(), strings);
+            DecodeResultAttr results = mth.getParentClass().get(DecodeResultAttr.TYPE);
+            if (results != null) {
+                addResults(results, mth, decoded);
+            }
+            if (report != null) {
+                addReport(mth, decoded);
+            }
+            // constructor method
+            if (mth.isConstructor()) {
+                DecodeCommentAttr.add(mth.getParentClass(), decoded);
+            } else {
+                DecodeCommentAttr.add(mth, decoded);
             }
         }
-        // decode Url
-        Matcher urlMatcher = UrlPattern.matcher(s);
-        StringBuilder urlSb = new StringBuilder();
-        while (urlMatcher.find()) {
-            String encodeUrl = urlMatcher.group();
-            urlSb.append(decodeUrl(encodeUrl));
-        }
-        if (!urlSb.isEmpty()) {
-            String decodeUrl = urlSb.toString();
-            nodes.add(new DecodeNode(DecodeType.URL, decodeUrl));
-            decodeString(decodeUrl, nodes);
-        }
-        // decode Unicode
-        Matcher unicodeMatcher = UnicodePattern.matcher(s);
-        StringBuilder unicodeSb = new StringBuilder();
-        while (unicodeMatcher.find()) {
-            String encodeUnicode = unicodeMatcher.group();
-            unicodeSb.append(decodeUnicode(encodeUnicode));
-        }
-        if (!unicodeSb.isEmpty()) {
-            String decodeUnicode = unicodeSb.toString();
-            nodes.add(new DecodeNode(DecodeType.UNICODE, decodeUnicode));
-            decodeString(decodeUnicode, nodes);
-        }
-    }
-    private String decodeBase64(String encodedBase64) {
-        try {
-            byte[] decodedBytes = java.util.Base64.getDecoder().decode(encodedBase64);
-            String decodeStr = new String(decodedBytes);
-            return MyPlugin.addEscapeCharacters(decodeStr);
-        } catch (Exception e) {
+    }
+    @Override
+    public String getCacheKey() {
+        // results are stored unescaped, entries of older runs held the comment text
+        return getClass().getName() + ":raw:" + engine.getCacheKey();
+    }
+    @Override
+    public void startClass(ClassNode cls) {
+        DecodeResultAttr.start(cls);
+    }
+    @Override
+    public byte[] save(ClassNode cls) {
+        DecodeResultAttr results = cls.get(DecodeResultAttr.TYPE);
+        cls.remove(DecodeResultAttr.TYPE);
+        // results cut by the class budget depend on timing, the class is decoded again next time,
+        // so is a class using constants of other classes, which may change while this one does not
+        if (results == null || results.hasForeignConstants() || !engine.isClassBudgetLeft(DecodeBudgetAttr.get(cls))) {
             return null;
         }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(results.getMethods().size());
+            for (Map.Entry<String, Map<String, int[]>> method : results.getMethods().entrySet()) {
+                ClassResultCache.writeString(out, method.getKey());
+                out.writeInt(method.getValue().size());
+                for (Map.Entry<String, int[]> entry : method.getValue().entrySet()) {
+                    int[] chain = entry.getValue();
+                    ClassResultCache.writeString(out, entry.getKey());
+                    out.writeInt(DecodeStore.size(chain));
+                    for (int i = 0; i < DecodeStore.size(chain); i++) {
+                        ClassResultCache.writeString(out, store.getDecoder(chain, i).getName());
+                        ClassResultCache.writeString(out, store.getResult(chain, i));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
     }
-    private String decodeUrl(String encodeUrl) {
-        return URLDecoder.decode(encodeUrl, StandardCharsets.UTF_8);
+    @Override
+    public boolean load(ClassNode cls, byte[] data) {
+        // read everything first, nothing is added if a method or decoder is missing
+        Map<MethodNode, HashMap<String, int[]>> methods = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int methodCount = in.readInt();
+            for (int i = 0; i < methodCount; i++) {
+                MethodNode mth = cls.searchMethodByShortId(ClassResultCache.readString(in));
+                if (mth == null) {
+                    return false;
+                }
+                HashMap<String, int[]> decoded = new HashMap<>();
+                int stringCount = in.readInt();
+                for (int j = 0; j < stringCount; j++) {
+                    String original = ClassResultCache.readString(in);
+                    int nodeCount = in.readInt();
+                    List<DecodeNode> nodes = new ArrayList<>(nodeCount);
+                    for (int k = 0; k < nodeCount; k++) {
+                        StringDecoder decoder = engine.getDecoder(ClassResultCache.readString(in));
+                        if (decoder == null) {
+                            return false;
+                        }
+                        nodes.add(new DecodeNode(decoder, ClassResultCache.readString(in)));
+                    }
+                    decoded.put(original, store.add(nodes));
+                }
+                methods.put(mth, decoded);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        for (Map.Entry<MethodNode, HashMap<String, int[]>> entry : methods.entrySet()) {
+            MethodNode mth = entry.getKey();
+            replayed.add(entry.getValue().size());
+            if (report != null) {
+                addReport(mth, entry.getValue());
+            }
+            if (mth.isConstructor()) {
+                DecodeCommentAttr.add(cls, entry.getValue());
+            } else {
+                DecodeCommentAttr.add(mth, entry.getValue());
+            }
+        }
+        return true;
     }
-    private String decodeUnicode(String unicodeString) {
-        StringBuilder sb = new StringBuilder();
-        int start = 0;
-        int end = unicodeString.indexOf("\\u", start + 2);
-        while (end != -1) {
-            String codePoint = unicodeString.substring(start + 2, end);
-            int intValue = Integer.parseInt(codePoint, 16);
-            sb.append((char) intValue);
-            start = end;
-            end = unicodeString.indexOf("\\u", start + 2);
+    private void addResults(DecodeResultAttr results, MethodNode mth, HashMap<String, int[]> decoded) {
+        // strings not decoded are dropped, the method is kept as it gets a comment anyway
+        Map<String, int[]> found = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : decoded.entrySet()) {
+            if (entry.getValue().length != 0) {
+                found.put(entry.getKey(), entry.getValue());
+            }
         }
-        String lastCodePoint = unicodeString.substring(start + 2);
-        int lastIntValue = Integer.parseInt(lastCodePoint, 16);
-        sb.append((char) lastIntValue);
-        return sb.toString();
+        results.add(mth.getMethodInfo().getShortId(), found);
     }
-    private ArrayList<String> getStringFromMethod(MethodNode methodNode) {
-
-        ArrayList<String> strings = new ArrayList<>();
-
-        if (methodNode.isNoCode())
-            return strings;
-
-        for (InsnNode insnNode : methodNode.getInstructions()) {
-            if (insnNode == null)
+    private HashMap<String, int[]> decode(ClassNode classNode, ArrayList<String> strings) {
+        HashMap<String, int[]> stringMap = new HashMap<>();
+        DecodeBudgetAttr budget = DecodeBudgetAttr.get(classNode);
+        for (String s : strings) {
+            if (stringMap.containsKey(s)) {
                 continue;
-            // get string
-            if (insnNode.getType().equals(InsnType.CONST_STR)) {
-                String s = ((ConstStringNode) insnNode).getString();
-                if (!Objects.equals(s, "")) {
-                    strings.add(s);
-                }
             }
+            // skip the rest of the class if too much was decoded already
+            if (!engine.isClassBudgetLeft(budget)) {
+                break;
+            }
+            long start = System.nanoTime();
+            int[] chain = decode(s);
+            if (chain.length != 0) {
+                decodedCount.increment();
+            }
+            // UTF-8 bytes, the same as chars for the mostly ASCII results
+            budget.add(store.getLength(chain), System.nanoTime() - start);
+            stringMap.put(s, chain);
         }
-        return strings;
+        return stringMap;
     }
-    private void addDecodeComments(IAttributeNode attributeNode, HashMap<String, ArrayList<DecodeNode>> comments) {
-
-        JadxCommentsAttr jadxCommentsAttr = new JadxCommentsAttr();
-        StringBuilder comment = new StringBuilder();
-
-        if (attributeNode instanceof MethodNode) {
-            comment = new StringBuilder("Strings Decode at method " + ((MethodNode) attributeNode).getAlias() + ":\n");
-        } else if (attributeNode instanceof ClassNode) {
-            comment = new StringBuilder("Strings Decode at constructor:\n");
+    /**
+     * @return decode chain packed in {@link #getStore()}, empty if nothing was decoded
+     */
+    public int[] decode(String s) {
+        // plain text is rejected faster than a cache lookup
+        if (!engine.accepts(StringClassifier.classify(s))) {
+            return DecodeStore.EMPTY_CHAIN;
         }
-
-        for (Map.Entry<String, ArrayList<DecodeNode>> entry : comments.entrySet()) {
-            String originString = entry.getKey();
-            ArrayList<DecodeNode> list = entry.getValue();
-            if (!list.isEmpty()) {
-                comment.append(originString);
-                for (DecodeNode node : list) {
-                    switch (node.getType()) {
-                        case BASE64 -> {
-                            comment.append(" --Base64-> ").append(node.getDecodeString());
-                        }
-                        case URL -> {
-                            comment.append(" --Url-> ").append(node.getDecodeString());
-                        }
-                        case UNICODE -> {
-                            comment.append(" --Unicode-> ").append(node.getDecodeString());
-                        }
-                        default -> {
-                        }
-                    }
+        return cache.get(s, engine::decode);
+    }
+    private void addReport(MethodNode mth, HashMap<String, int[]> decoded) {
+        for (Map.Entry<String, int[]> entry : decoded.entrySet()) {
+            if (entry.getValue().length != 0) {
+                report.add(mth, entry.getKey(), entry.getValue(), store);
+            }
+        }
+    }
+    private String getString(MethodNode mth, InsnNode insnNode) {
+        if (insnNode.getType().equals(InsnType.CONST_STR)) {
+            return ((ConstStringNode) insnNode).getString();
+        }
+        // the scanner runs before jadx inlines constants, so this is a read in the bytecode:
+        // a static field with an initial value in the dex file, like ones not inlined by the compiler
+        FieldNode fieldNode = mth.root().resolveField((FieldInfo) ((IndexInsnNode) insnNode).getIndex());
+        if (fieldNode != null) {
+            EncodedValue constValue = fieldNode.get(JadxAttrType.CONSTANT_VALUE);
+            if (constValue != null && constValue.getType() == EncodedType.ENCODED_STRING) {
+                DecodeResultAttr results = mth.getParentClass().get(DecodeResultAttr.TYPE);
+                if (results != null && fieldNode.getParentClass() != mth.getParentClass()) {
+                    results.setForeignConstants();
                 }
-                comment.append("\n");
+                return (String) constValue.getValue();
             }
         }
-
-        jadxCommentsAttr.add(CommentsLevel.USER_ONLY, comment.toString());
-        attributeNode.addAttr(AType.CODE_COMMENTS, comment.toString());
+        return null;
     }
 }
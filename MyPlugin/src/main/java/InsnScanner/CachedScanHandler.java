@@ -0,0 +1,30 @@
+package InsnScanner;
+
+import jadx.core.dex.nodes.ClassNode;
+
+/**
+ * Handler with results that can be stored in the {@link ResultCache.ClassResultCache} and applied again
+ * to an unchanged class, instead of scanning it.
+ *
+ * @param <S> per method state
+ */
+public interface CachedScanHandler<S> extends ScanHandler<S> {
+    /**
+     * Apply stored results to the class.
+     *
+     * @return false if the results can't be used, the class is scanned then
+     */
+    boolean load(ClassNode cls, byte[] data);
+
+    /**
+     * Called before methods of a class are scanned, results of the class should be collected for {@link #save}.
+     */
+    void startClass(ClassNode cls);
+
+    /**
+     * Called after all methods of the class are scanned.
+     *
+     * @return results of the class, null to store nothing
+     */
+    byte[] save(ClassNode cls);
+}
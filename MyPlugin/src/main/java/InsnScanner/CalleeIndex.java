@@ -0,0 +1,110 @@
+package InsnScanner;
+
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Methods calling the APIs the scan handlers look for, found once per input in the code kept by the jadx input plugins,
+ * before methods are built. Each method is mapped to the bits of the handlers it references an API of,
+ * methods not referencing any of them are not in the index.
+ */
+public class CalleeIndex {
+    private static final Set<Opcode> INVOKES = EnumSet.of(
+            Opcode.INVOKE_DIRECT, Opcode.INVOKE_DIRECT_RANGE,
+            Opcode.INVOKE_INTERFACE, Opcode.INVOKE_INTERFACE_RANGE,
+            Opcode.INVOKE_STATIC, Opcode.INVOKE_STATIC_RANGE,
+            Opcode.INVOKE_SUPER, Opcode.INVOKE_SUPER_RANGE,
+            Opcode.INVOKE_VIRTUAL, Opcode.INVOKE_VIRTUAL_RANGE,
+            Opcode.INVOKE_SPECIAL);
+
+    // method name -> class descriptor -> handler bits
+    private final Map<String, Map<String, Integer>> callees = new HashMap<>();
+    // field type descriptor -> handler bits
+    private final Map<String, Integer> fieldTypes = new HashMap<>();
+    private final Map<MethodInfo, Integer> masks = new ConcurrentHashMap<>();
+
+    /**
+     * @param callees    full method name, like {@code java.lang.Class.forName} -> bits of the handlers looking for it
+     * @param fieldTypes full type name of loaded static fields -> bits of the handlers
+     * @param filter     classes to index, methods of others are not in the index
+     */
+    public CalleeIndex(RootNode root, Map<String, Integer> callees, Map<String, Integer> fieldTypes,
+                       Predicate<ClassNode> filter) {
+        callees.forEach((fullName, bits) -> {
+            int dot = fullName.lastIndexOf('.');
+            this.callees.computeIfAbsent(fullName.substring(dot + 1), name -> new HashMap<>())
+                    .merge(toDescriptor(fullName.substring(0, dot)), bits, (a, b) -> a | b);
+        });
+        fieldTypes.forEach((type, bits) -> this.fieldTypes.merge(toDescriptor(type), bits, (a, b) -> a | b));
+        root.getClasses().parallelStream().filter(filter).forEach(cls -> addClass(root, cls));
+    }
+
+    private static String toDescriptor(String clsName) {
+        return 'L' + clsName.replace('.', '/') + ';';
+    }
+
+    private void addClass(RootNode root, ClassNode cls) {
+        IClassData clsData = cls.getClsData();
+        if (clsData == null) {
+            return;
+        }
+        clsData.copy().visitFieldsAndMethods(field -> {
+        }, mth -> {
+            ICodeReader code = mth.getCodeReader();
+            if (code == null) {
+                return;
+            }
+            int[] mask = new int[1];
+            code.visitInstructions(insn -> mask[0] |= getMask(insn));
+            if (mask[0] != 0) {
+                masks.put(MethodInfo.fromRef(root, mth.getMethodRef()), mask[0]);
+            }
+        });
+    }
+
+    private int getMask(InsnData insn) {
+        Opcode opcode = insn.getOpcode();
+        if (INVOKES.contains(opcode)) {
+            insn.decode();
+            IMethodRef ref = insn.getIndexAsMethod();
+            ref.load();
+            Map<String, Integer> classes = callees.get(ref.getName());
+            if (classes != null) {
+                return classes.getOrDefault(ref.getParentClassType(), 0);
+            }
+        } else if (opcode == Opcode.SGET && !fieldTypes.isEmpty()) {
+            insn.decode();
+            IFieldRef ref = insn.getIndexAsField();
+            return fieldTypes.getOrDefault(ref.getType(), 0);
+        }
+        return 0;
+    }
+
+    /**
+     * @return bits of the handlers the method references an API of
+     */
+    public int getMask(MethodInfo mth) {
+        return masks.getOrDefault(mth, 0);
+    }
+
+    /**
+     * @return methods referencing at least one API
+     */
+    public int size() {
+        return masks.size();
+    }
+}
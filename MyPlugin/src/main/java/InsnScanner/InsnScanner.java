@@ -0,0 +1,339 @@
+package InsnScanner;
+
+import PassMetrics.PassMetrics;
+import PassMetrics.PassStats;
+import ResultCache.ClassResultCache;
+import jadx.api.plugins.input.data.attributes.IJadxAttrType;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.core.dex.attributes.AType;
+import jadx.core.dex.instructions.InsnType;
+import jadx.core.dex.instructions.InvokeNode;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.InsnWrapArg;
+import jadx.core.dex.nodes.BlockNode;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+import jadx.core.dex.visitors.AbstractVisitor;
+import jadx.core.dex.visitors.DepthTraversal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Walks instructions of each method once (including wrapped instructions, arguments first)
+ * and sends them to the registered {@link ScanHandler}s by instruction type and called method name.
+ * <p>
+ * With a {@link ClassResultCache}, a handler is skipped for a class not changed since a previous run
+ * if it got no instructions of the class in that run, or if it is a {@link CachedScanHandler} and its stored results are applied.
+ * With a {@link CalleeIndex}, a handler looking for a few APIs is skipped in methods not referencing them.
+ * With a class filter, rejected classes are not scanned at all.
+ */
+public class InsnScanner extends AbstractVisitor {
+    // at most 32 handlers, one bit for each
+    private static final int MAX_HANDLERS = Integer.SIZE;
+
+    private final List<ScanHandler<Object>> handlers;
+    private final int[] typeMasks;
+    private final Map<String, Integer> calleeMasks;
+    // results of previous runs, null if disabled
+    private ClassResultCache cache;
+    // time of each handler, null if disabled
+    private List<PassStats> handlerStats;
+    // methods referencing the APIs of the indexed handlers, null if not built
+    private CalleeIndex calleeIndex;
+    private int indexedMask;
+    // classes to scan, null for all
+    private Predicate<ClassNode> classFilter;
+
+    public InsnScanner() {
+        handlers = new ArrayList<>();
+        typeMasks = new int[InsnType.values().length];
+        calleeMasks = new HashMap<>();
+    }
+
+    /**
+     * Scan method with only one handler, for passes running on their own.
+     */
+    public static void scan(MethodNode mth, ScanHandler<?> handler) {
+        InsnScanner scanner = new InsnScanner();
+        scanner.addHandler(handler);
+        scanner.visit(mth);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void addHandler(ScanHandler<?> handler) {
+        if (handlers.size() == MAX_HANDLERS) {
+            throw new IllegalStateException("Too many scan handlers");
+        }
+        int bit = 1 << handlers.size();
+        handlers.add((ScanHandler<Object>) handler);
+        for (InsnType type : handler.getInsnTypes()) {
+            typeMasks[type.ordinal()] |= bit;
+        }
+        for (String name : handler.getCalleeNames()) {
+            calleeMasks.merge(name, bit, (a, b) -> a | b);
+        }
+    }
+
+    public boolean isEmpty() {
+        return handlers.isEmpty();
+    }
+
+    public void setCache(ClassResultCache cache) {
+        this.cache = cache;
+    }
+
+    public void setClassFilter(Predicate<ClassNode> classFilter) {
+        this.classFilter = classFilter;
+    }
+
+    /**
+     * Find once the methods calling the APIs of handlers with {@link ScanHandler#getIndexedCallees()},
+     * other methods are not scanned for them. Call after all handlers are added.
+     */
+    public void buildCalleeIndex(RootNode root) {
+        Map<String, Integer> callees = new HashMap<>();
+        Map<String, Integer> fieldTypes = new HashMap<>();
+        int mask = 0;
+        for (int i = 0; i < handlers.size(); i++) {
+            ScanHandler<Object> handler = handlers.get(i);
+            Set<String> names = handler.getIndexedCallees();
+            if (names == null) {
+                continue;
+            }
+            int bit = 1 << i;
+            mask |= bit;
+            for (String name : names) {
+                callees.merge(name, bit, (a, b) -> a | b);
+            }
+            for (String type : handler.getIndexedFieldTypes()) {
+                fieldTypes.merge(type, bit, (a, b) -> a | b);
+            }
+        }
+        if (mask != 0) {
+            calleeIndex = new CalleeIndex(root, callees, fieldTypes, classFilter != null ? classFilter : cls -> true);
+            indexedMask = mask;
+        }
+    }
+
+    public CalleeIndex getCalleeIndex() {
+        return calleeIndex;
+    }
+
+    /**
+     * Measure wall time of each handler in each method, call after all handlers are added.
+     */
+    public void setMetrics(PassMetrics metrics) {
+        if (!metrics.isTimed()) {
+            return;
+        }
+        handlerStats = new ArrayList<>(handlers.size());
+        for (ScanHandler<Object> handler : handlers) {
+            handlerStats.add(metrics.register(getClass().getSimpleName() + '/' + handler.getClass().getSimpleName()));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean visit(ClassNode cls) {
+        if (classFilter != null && !classFilter.test(cls)) {
+            // inner classes are rejected with their top class
+            return false;
+        }
+        if (cache == null || handlers.isEmpty()) {
+            return true;
+        }
+        int count = handlers.size();
+        int skipped = 0;
+        for (int i = 0; i < count; i++) {
+            ScanHandler<Object> handler = handlers.get(i);
+            byte[] data = cache.get(cls, handler.getCacheKey());
+            if (data == null) {
+                continue;
+            }
+            // empty result: the handler got no instructions of this class
+            if (data.length == 0 || handler instanceof CachedScanHandler
+                    && ((CachedScanHandler<Object>) handler).load(cls, data)) {
+                skipped |= 1 << i;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((skipped & (1 << i)) == 0 && handlers.get(i) instanceof CachedScanHandler) {
+                ((CachedScanHandler<Object>) handlers.get(i)).startClass(cls);
+            }
+        }
+        ClassScanAttr state = new ClassScanAttr(skipped);
+        cls.addAttr(state);
+        for (ClassNode inner : cls.getInnerClasses()) {
+            DepthTraversal.visit(this, inner);
+        }
+        boolean failed = false;
+        for (MethodNode mth : cls.getMethods()) {
+            DepthTraversal.visit(this, mth);
+            failed |= mth.contains(AType.JADX_ERROR);
+        }
+        cls.remove(ClassScanAttr.TYPE);
+
+        for (int i = 0; i < count; i++) {
+            if ((skipped & (1 << i)) != 0) {
+                continue;
+            }
+            ScanHandler<Object> handler = handlers.get(i);
+            byte[] data = null;
+            if (handler instanceof CachedScanHandler) {
+                data = ((CachedScanHandler<Object>) handler).save(cls);
+            } else if ((state.touched & (1 << i)) == 0) {
+                data = new byte[0];
+            }
+            // results of a method failed in this run are not reused
+            if (data != null && !failed) {
+                cache.put(cls, handler.getCacheKey(), data);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void visit(MethodNode mth) {
+        if (mth.isNoCode() || handlers.isEmpty()) {
+            return;
+        }
+        if (classFilter != null && !classFilter.test(mth.getParentClass())) {
+            return;
+        }
+        ClassScanAttr state = mth.getParentClass().get(ClassScanAttr.TYPE);
+        int skipped = state != null ? state.skipped : 0;
+        if (calleeIndex != null) {
+            skipped |= indexedMask & ~calleeIndex.getMask(mth.getMethodInfo());
+        }
+        if (state == null) {
+            scanMethod(mth, skipped);
+        } else {
+            state.touched |= scanMethod(mth, skipped);
+        }
+    }
+
+    /**
+     * @return bits of handlers which got at least one instruction
+     */
+    private int scanMethod(MethodNode mth, int skipped) {
+        int count = handlers.size();
+        Object[] states = new Object[count];
+        long[] nanos = handlerStats != null ? new long[count] : null;
+        int active = 0;
+        for (int i = 0; i < count; i++) {
+            if ((skipped & (1 << i)) != 0) {
+                continue;
+            }
+            long start = nanos != null ? System.nanoTime() : 0;
+            states[i] = handlers.get(i).start(mth);
+            if (nanos != null) {
+                nanos[i] += System.nanoTime() - start;
+            }
+            if (states[i] != null) {
+                active |= 1 << i;
+            }
+        }
+        if (active == 0) {
+            return 0;
+        }
+        int touched = 0;
+
+        List<BlockNode> blocks = mth.getBasicBlocks();
+        if (blocks != null) {
+            for (BlockNode blockNode : blocks) {
+                for (InsnNode insnNode : blockNode.getInstructions()) {
+                    touched |= scanInsn(mth, insnNode, states, active, nanos);
+                }
+            }
+        } else {
+            // blocks not built yet
+            InsnNode[] insns = mth.getInstructions();
+            if (insns != null) {
+                for (InsnNode insnNode : insns) {
+                    if (insnNode != null) {
+                        touched |= scanInsn(mth, insnNode, states, active, nanos);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if ((active & (1 << i)) != 0) {
+                long start = nanos != null ? System.nanoTime() : 0;
+                handlers.get(i).finish(mth, states[i]);
+                if (nanos != null) {
+                    nanos[i] += System.nanoTime() - start;
+                }
+            }
+        }
+        if (nanos != null) {
+            for (int i = 0; i < count; i++) {
+                if ((skipped & (1 << i)) == 0) {
+                    handlerStats.get(i).addMethod(mth, nanos[i], 0);
+                }
+            }
+        }
+        return touched;
+    }
+
+    private int scanInsn(MethodNode mth, InsnNode insnNode, Object[] states, int active, long[] nanos) {
+        int touched = 0;
+        for (InsnArg arg : insnNode.getArguments()) {
+            if (arg.isInsnWrap()) {
+                touched |= scanInsn(mth, ((InsnWrapArg) arg).getWrapInsn(), states, active, nanos);
+            }
+        }
+        InsnType type = insnNode.getType();
+        int mask = typeMasks[type.ordinal()];
+        if (type == InsnType.INVOKE && !calleeMasks.isEmpty()) {
+            Integer calleeMask = calleeMasks.get(((InvokeNode) insnNode).getCallMth().getName());
+            if (calleeMask != null) {
+                mask |= calleeMask;
+            }
+        }
+        mask &= active;
+        touched |= mask;
+        while (mask != 0) {
+            int i = Integer.numberOfTrailingZeros(mask);
+            if (nanos == null) {
+                handlers.get(i).handle(mth, insnNode, states[i]);
+            } else {
+                long start = System.nanoTime();
+                handlers.get(i).handle(mth, insnNode, states[i]);
+                nanos[i] += System.nanoTime() - start;
+            }
+            mask &= mask - 1;
+        }
+        return touched;
+    }
+
+    // handlers skipped in a class and handlers which got its instructions, while the class is scanned
+    private static final class ClassScanAttr implements IJadxAttribute {
+        static final IJadxAttrType<ClassScanAttr> TYPE = new IJadxAttrType<>() {
+        };
+
+        final int skipped;
+        int touched;
+
+        ClassScanAttr(int skipped) {
+            this.skipped = skipped;
+        }
+
+        @Override
+        public IJadxAttrType<ClassScanAttr> getAttrType() {
+            return TYPE;
+        }
+
+        @Override
+        public String toAttrString() {
+            return "CLASS_SCAN skipped: " + Integer.toBinaryString(skipped);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package InsnScanner;
+
+import jadx.core.dex.instructions.InsnType;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.Set;
+
+/**
+ * Pass running on top of {@link InsnScanner}.
+ * Receives only the instructions it is interested in, per method state is created by {@link #start(MethodNode)}.
+ *
+ * @param <S> per method state
+ */
+public interface ScanHandler<S> {
+    /**
+     * Types of instructions sent to {@link #handle}.
+     */
+    Set<InsnType> getInsnTypes();
+
+    /**
+     * Names of called methods, INVOKE instructions calling them are sent to {@link #handle}.
+     */
+    Set<String> getCalleeNames();
+
+    /**
+     * Full names of the called methods the handler looks for, like {@code java.lang.Class.forName}.
+     * With a {@link CalleeIndex}, methods calling none of them and loading no static field of
+     * {@link #getIndexedFieldTypes()} are not scanned for this handler.
+     *
+     * @return null if the handler needs every method
+     */
+    default Set<String> getIndexedCallees() {
+        return null;
+    }
+
+    /**
+     * Types of static fields, like {@code java.lang.reflect.Method}, loads of them are looked for with {@link #getIndexedCallees()}.
+     */
+    default Set<String> getIndexedFieldTypes() {
+        return Set.of();
+    }
+
+    /**
+     * Called before method is scanned.
+     *
+     * @return state of the method, null to skip this method
+     */
+    S start(MethodNode mth);
+
+    void handle(MethodNode mth, InsnNode insn, S state);
+
+    /**
+     * Called after the whole method is scanned, instructions can be modified here.
+     */
+    void finish(MethodNode mth, S state);
+
+    /**
+     * Name of the handler and its options in the result cache.
+     */
+    default String getCacheKey() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,568 @@
+package Interpreter;
+
+import ConstFold.PureFunction;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.ArithNode;
+import jadx.core.dex.instructions.ArithOp;
+import jadx.core.dex.instructions.ConstStringNode;
+import jadx.core.dex.instructions.FillArrayData;
+import jadx.core.dex.instructions.FillArrayInsn;
+import jadx.core.dex.instructions.FilledNewArrayNode;
+import jadx.core.dex.instructions.GotoNode;
+import jadx.core.dex.instructions.IfNode;
+import jadx.core.dex.instructions.IfOp;
+import jadx.core.dex.instructions.IndexInsnNode;
+import jadx.core.dex.instructions.InsnType;
+import jadx.core.dex.instructions.InvokeNode;
+import jadx.core.dex.instructions.InvokeType;
+import jadx.core.dex.instructions.NewArrayNode;
+import jadx.core.dex.instructions.SwitchData;
+import jadx.core.dex.instructions.SwitchInsn;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.instructions.args.RegisterArg;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One interpreted call with its nested calls, or one class initializer.
+ * <p>
+ * Registers hold Integer for 32-bit values (float as bits), Long for 64-bit values (double as bits)
+ * and objects made by the interpreter: strings, arrays and string builders. The constant 0 is also null.
+ * Exceptions are not caught by the interpreted code, a throwing call stops the whole execution.
+ */
+final class Execution {
+    // nested calls of app methods
+    private static final int MAX_DEPTH = 16;
+    // the deadline is checked once in this many instructions
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    private final MethodInterpreter interpreter;
+    private final long deadline;
+    private int insnsLeft;
+    private int depth;
+    // class whose <clinit> runs and its static fields, null for a call
+    private final ClassNode initClass;
+    private final Map<FieldInfo, Object> initFields;
+    // classes initialized by this execution and by the executions waiting for it
+    private final Set<ClassNode> initializing;
+
+    Execution(MethodInterpreter interpreter, ClassNode initClass, Set<ClassNode> outerInits) {
+        this.interpreter = interpreter;
+        this.insnsLeft = interpreter.getMaxInsns();
+        this.deadline = System.nanoTime() + interpreter.getMaxNanos();
+        this.initClass = initClass;
+        if (initClass == null) {
+            initFields = null;
+            initializing = outerInits;
+        } else {
+            initFields = new HashMap<>();
+            initializing = new HashSet<>(outerInits);
+            initializing.add(initClass);
+        }
+    }
+
+    Set<ClassNode> getInitializing() {
+        return initializing;
+    }
+
+    /**
+     * @param args register values of the arguments
+     * @return register value of the result, null for void methods
+     */
+    Object call(MethodNode mth, Object[] args) throws InterpretException {
+        if (depth == MAX_DEPTH) {
+            throw new InterpretException(InterpretException.Kind.BUDGET, "call depth in " + mth);
+        }
+        Program program = interpreter.getProgram(mth);
+        if (program.isDisabled()) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "method " + mth);
+        }
+        depth++;
+        try {
+            return run(program, args);
+        } catch (RuntimeException e) {
+            // same exceptions as the code on a device: division by zero, index out of bounds, casts
+            throw new InterpretException(InterpretException.Kind.THROWN, e.toString());
+        } finally {
+            depth--;
+        }
+    }
+
+    /**
+     * Run the class initializer of {@code initClass}.
+     *
+     * @return values of its static fields
+     */
+    Map<FieldInfo, Object> initClass() throws InterpretException {
+        MethodNode clinit = initClass.getClassInitMth();
+        if (clinit != null) {
+            call(clinit, new Object[0]);
+        }
+        return initFields;
+    }
+
+    private Object run(Program program, Object[] args) throws InterpretException {
+        InsnNode[] insns = program.getInsns();
+        int[] next = program.getNext();
+        Object[] regs = new Object[program.getRegsCount()];
+        int reg = program.getArgsStart();
+        List<ArgType> argTypes = program.getMethod().getMethodInfo().getArgumentsTypes();
+        for (int i = 0; i < args.length; i++) {
+            regs[reg] = args[i];
+            reg += argTypes.get(i).getRegCount();
+        }
+        // result of the last call or filled-new-array, for move-result
+        Object result = null;
+        int offset = 0;
+        while (true) {
+            if (--insnsLeft < 0) {
+                throw new InterpretException(InterpretException.Kind.BUDGET, "budget used up in " + program.getMethod());
+            }
+            if (insnsLeft % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                throw new InterpretException(InterpretException.Kind.TIMEOUT, "time used up in " + program.getMethod());
+            }
+            InsnNode insn = offset >= 0 && offset < insns.length ? insns[offset] : null;
+            if (insn == null) {
+                throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "no instruction at " + offset);
+            }
+            int nextOffset = next[offset];
+            switch (insn.getType()) {
+                case NOP, MONITOR_ENTER, MONITOR_EXIT -> {
+                }
+                case CONST -> {
+                    long literal = ((LiteralArg) insn.getArg(0)).getLiteral();
+                    set(regs, insn, isWide(insn.getResult().getInitType()) ? (Object) literal : (Object) (int) literal);
+                }
+                case CONST_STR -> set(regs, insn, ((ConstStringNode) insn).getString());
+                case MOVE -> set(regs, insn, get(regs, insn.getArg(0)));
+                case MOVE_RESULT -> set(regs, insn, result);
+                case ARITH -> set(regs, insn, arith(((ArithNode) insn).getOp(), insn.getResult().getInitType(),
+                        get(regs, insn.getArg(0)), get(regs, insn.getArg(1))));
+                case NEG -> set(regs, insn, neg(insn.getResult().getInitType(), get(regs, insn.getArg(0))));
+                case NOT -> {
+                    Object value = get(regs, insn.getArg(0));
+                    set(regs, insn, value instanceof Long ? (Object) ~(Long) value : (Object) ~(Integer) value);
+                }
+                case CAST -> set(regs, insn, cast(get(regs, insn.getArg(0)),
+                        ((RegisterArg) insn.getArg(0)).getInitType(), insn.getResult().getInitType()));
+                case CMP_L, CMP_G -> set(regs, insn, compare(insn.getType(), ((RegisterArg) insn.getArg(0)).getInitType(),
+                        get(regs, insn.getArg(0)), get(regs, insn.getArg(1))));
+                case IF -> {
+                    IfNode ifNode = (IfNode) insn;
+                    if (condition(ifNode.getOp(), get(regs, insn.getArg(0)), get(regs, insn.getArg(1)))) {
+                        nextOffset = ifNode.getTarget();
+                    }
+                }
+                case GOTO -> nextOffset = ((GotoNode) insn).getTarget();
+                case SWITCH -> nextOffset = switchTarget(insns, offset, (SwitchInsn) insn,
+                        (Integer) get(regs, insn.getArg(0)), nextOffset);
+                case NEW_ARRAY -> set(regs, insn, Array.newInstance(
+                        interpreter.getJavaClass(((NewArrayNode) insn).getArrayType().getArrayElement()),
+                        (Integer) get(regs, insn.getArg(0))));
+                case FILLED_NEW_ARRAY -> {
+                    Object array = Array.newInstance(interpreter.getJavaClass(((FilledNewArrayNode) insn).getElemType()),
+                            insn.getArgsCount());
+                    for (int i = 0; i < insn.getArgsCount(); i++) {
+                        Array.set(array, i, box(get(regs, insn.getArg(i)), array.getClass().getComponentType()));
+                    }
+                    result = array;
+                }
+                case FILL_ARRAY -> fillArray(insns, (FillArrayInsn) insn, get(regs, insn.getArg(0)));
+                case ARRAY_LENGTH -> set(regs, insn, Array.getLength(get(regs, insn.getArg(0))));
+                case AGET -> set(regs, insn, unbox(Array.get(get(regs, insn.getArg(0)), (Integer) get(regs, insn.getArg(1)))));
+                case APUT -> {
+                    Object array = get(regs, insn.getArg(0));
+                    Array.set(array, (Integer) get(regs, insn.getArg(1)),
+                            box(get(regs, insn.getArg(2)), array.getClass().getComponentType()));
+                }
+                case CHECK_CAST -> set(regs, insn, checkCast((ArgType) ((IndexInsnNode) insn).getIndex(), get(regs, insn.getArg(0))));
+                case SGET -> set(regs, insn, getStatic((FieldInfo) ((IndexInsnNode) insn).getIndex()));
+                case SPUT -> putStatic((FieldInfo) ((IndexInsnNode) insn).getIndex(), get(regs, insn.getArg(0)));
+                case NEW_INSTANCE -> set(regs, insn, new Uninitialized());
+                case INVOKE -> result = invoke((InvokeNode) insn, regs);
+                case RETURN -> {
+                    return insn.getArgsCount() == 0 ? null : get(regs, insn.getArg(0));
+                }
+                default -> throw new InterpretException(InterpretException.Kind.UNSUPPORTED,
+                        insn.getType() + " in " + program.getMethod());
+            }
+            offset = nextOffset;
+        }
+    }
+
+    private Object invoke(InvokeNode insn, Object[] regs) throws InterpretException {
+        MethodInfo callMth = insn.getCallMth();
+        Object[] args = new Object[insn.getArgsCount()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = get(regs, insn.getArg(i));
+        }
+        PureFunction function = interpreter.getIntrinsic(callMth);
+        if (function != null) {
+            Object created = null;
+            if (callMth.isConstructor()) {
+                created = args[0];
+                if (!(created instanceof Uninitialized)) {
+                    throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "constructor call " + callMth);
+                }
+            }
+            Object value = callIntrinsic(function, callMth, args);
+            if (created == null) {
+                return value;
+            }
+            for (int i = 0; i < regs.length; i++) {
+                if (regs[i] == created) {
+                    regs[i] = value;
+                }
+            }
+            return null;
+        }
+        if (insn.getInvokeType() == InvokeType.STATIC) {
+            MethodNode mth = interpreter.getRoot().resolveMethod(callMth);
+            if (mth != null) {
+                return call(mth, args);
+            }
+        }
+        throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "call of " + callMth);
+    }
+
+    private Object callIntrinsic(PureFunction function, MethodInfo callMth, Object[] args) throws InterpretException {
+        // 'this' of instance methods is first
+        int offset = args.length - callMth.getArgsCount();
+        List<ArgType> argTypes = callMth.getArgumentsTypes();
+        for (int i = offset; i < args.length; i++) {
+            args[i] = box(args[i], interpreter.getJavaClass(argTypes.get(i - offset)));
+        }
+        try {
+            return unbox(function.apply(args));
+        } catch (Exception e) {
+            throw new InterpretException(InterpretException.Kind.THROWN, callMth + ": " + e);
+        }
+    }
+
+    private Object getStatic(FieldInfo fieldInfo) throws InterpretException {
+        FieldNode field = interpreter.getRoot().resolveField(fieldInfo);
+        if (field == null) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "field " + fieldInfo);
+        }
+        ClassNode cls = field.getParentClass();
+        FieldInfo key = field.getFieldInfo();
+        if (cls == initClass) {
+            return initFields.containsKey(key) ? initFields.get(key) : getInitialValue(field);
+        }
+        // other fields can be changed at runtime
+        if (!field.getAccessFlags().isFinal()) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "not final field " + fieldInfo);
+        }
+        Map<FieldInfo, Object> fields = interpreter.getStaticFields(cls, this);
+        return copy(fields.containsKey(key) ? fields.get(key) : getInitialValue(field));
+    }
+
+    private void putStatic(FieldInfo fieldInfo, Object value) throws InterpretException {
+        FieldNode field = interpreter.getRoot().resolveField(fieldInfo);
+        // only the class initializer may write its own fields
+        if (field == null || field.getParentClass() != initClass) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "write of field " + fieldInfo);
+        }
+        initFields.put(field.getFieldInfo(), value);
+    }
+
+    private static Object getInitialValue(FieldNode field) {
+        EncodedValue constant = field.get(JadxAttrType.CONSTANT_VALUE);
+        if (constant != null) {
+            return unbox(constant.getValue());
+        }
+        return isWide(field.getType()) ? (Object) 0L : (Object) 0;
+    }
+
+    /**
+     * Static fields are shared by all calls, each call gets its own copy of arrays.
+     */
+    static Object copy(Object value) throws InterpretException {
+        if (value == null || value instanceof Integer || value instanceof Long || value instanceof String) {
+            return value;
+        }
+        if (!value.getClass().isArray()) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "shared " + value.getClass().getName());
+        }
+        Class<?> type = value.getClass().getComponentType();
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(type, length);
+        if (type.isPrimitive()) {
+            System.arraycopy(value, 0, copy, 0, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copy(Array.get(value, i)));
+            }
+        }
+        return copy;
+    }
+
+    private Object checkCast(ArgType type, Object value) throws InterpretException {
+        if (value == null || value instanceof Integer) {
+            // null passes every cast
+            return value;
+        }
+        Class<?> cls = interpreter.getJavaClass(type);
+        if (cls == Object.class && !type.equals(ArgType.OBJECT)) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "cast to " + type);
+        }
+        return cls.cast(value);
+    }
+
+    private static int switchTarget(InsnNode[] insns, int offset, SwitchInsn insn, int key, int defaultOffset) {
+        InsnNode data = insns[insn.getDataTarget()];
+        if (!(data instanceof SwitchData)) {
+            throw new IllegalStateException("No switch data at " + insn.getDataTarget());
+        }
+        // targets are relative to the switch
+        SwitchData switchData = (SwitchData) data;
+        int[] keys = switchData.getKeys();
+        for (int i = 0; i < switchData.getSize(); i++) {
+            if (keys[i] == key) {
+                return offset + switchData.getTargets()[i];
+            }
+        }
+        return defaultOffset;
+    }
+
+    private static void fillArray(InsnNode[] insns, FillArrayInsn insn, Object array) {
+        InsnNode data = insns[insn.getTarget()];
+        if (!(data instanceof FillArrayData)) {
+            throw new IllegalStateException("No array data at " + insn.getTarget());
+        }
+        Object values = ((FillArrayData) data).getData();
+        Class<?> type = array.getClass().getComponentType();
+        boolean wide = type == long.class || type == double.class;
+        for (int i = 0, size = Array.getLength(values); i < size; i++) {
+            long bits = Array.getLong(values, i);
+            Array.set(array, i, box(wide ? (Object) bits : (Object) (int) bits, type));
+        }
+    }
+
+    private static Object arith(ArithOp op, ArgType type, Object a, Object b) {
+        if (type.equals(ArgType.LONG)) {
+            long x = (Long) a;
+            // shift distance is an int
+            long y = ((Number) b).longValue();
+            return switch (op) {
+                case ADD -> x + y;
+                case SUB -> x - y;
+                case MUL -> x * y;
+                case DIV -> x / y;
+                case REM -> x % y;
+                case AND -> x & y;
+                case OR -> x | y;
+                case XOR -> x ^ y;
+                case SHL -> x << y;
+                case SHR -> x >> y;
+                case USHR -> x >>> y;
+            };
+        }
+        if (type.equals(ArgType.FLOAT)) {
+            float x = Float.intBitsToFloat((Integer) a);
+            float y = Float.intBitsToFloat((Integer) b);
+            return Float.floatToRawIntBits(switch (op) {
+                case ADD -> x + y;
+                case SUB -> x - y;
+                case MUL -> x * y;
+                case DIV -> x / y;
+                case REM -> x % y;
+                default -> throw new IllegalArgumentException(op + " on float");
+            });
+        }
+        if (type.equals(ArgType.DOUBLE)) {
+            double x = Double.longBitsToDouble((Long) a);
+            double y = Double.longBitsToDouble((Long) b);
+            return Double.doubleToRawLongBits(switch (op) {
+                case ADD -> x + y;
+                case SUB -> x - y;
+                case MUL -> x * y;
+                case DIV -> x / y;
+                case REM -> x % y;
+                default -> throw new IllegalArgumentException(op + " on double");
+            });
+        }
+        int x = (Integer) a;
+        int y = (Integer) b;
+        return switch (op) {
+            case ADD -> x + y;
+            case SUB -> x - y;
+            case MUL -> x * y;
+            case DIV -> x / y;
+            case REM -> x % y;
+            case AND -> x & y;
+            case OR -> x | y;
+            case XOR -> x ^ y;
+            case SHL -> x << y;
+            case SHR -> x >> y;
+            case USHR -> x >>> y;
+        };
+    }
+
+    private static Object neg(ArgType type, Object value) {
+        if (type.equals(ArgType.LONG)) {
+            return -(Long) value;
+        }
+        if (type.equals(ArgType.FLOAT)) {
+            return Float.floatToRawIntBits(-Float.intBitsToFloat((Integer) value));
+        }
+        if (type.equals(ArgType.DOUBLE)) {
+            return Double.doubleToRawLongBits(-Double.longBitsToDouble((Long) value));
+        }
+        return -(Integer) value;
+    }
+
+    private static Object cast(Object value, ArgType from, ArgType to) {
+        Number number;
+        if (from.equals(ArgType.FLOAT)) {
+            number = Float.intBitsToFloat((Integer) value);
+        } else if (from.equals(ArgType.DOUBLE)) {
+            number = Double.longBitsToDouble((Long) value);
+        } else {
+            number = (Number) value;
+        }
+        // same rounding and saturation as on a device
+        return switch (to.getPrimitiveType()) {
+            case LONG -> number.longValue();
+            case FLOAT -> Float.floatToRawIntBits(number.floatValue());
+            case DOUBLE -> Double.doubleToRawLongBits(number.doubleValue());
+            case BYTE -> (int) number.byteValue();
+            case SHORT -> (int) number.shortValue();
+            case CHAR -> (int) (char) number.intValue();
+            default -> number.intValue();
+        };
+    }
+
+    private static int compare(InsnType insnType, ArgType type, Object a, Object b) {
+        if (type.equals(ArgType.LONG)) {
+            return Long.compare((Long) a, (Long) b);
+        }
+        double x;
+        double y;
+        if (type.equals(ArgType.FLOAT)) {
+            x = Float.intBitsToFloat((Integer) a);
+            y = Float.intBitsToFloat((Integer) b);
+        } else {
+            x = Double.longBitsToDouble((Long) a);
+            y = Double.longBitsToDouble((Long) b);
+        }
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            return insnType == InsnType.CMP_G ? 1 : -1;
+        }
+        return x < y ? -1 : x > y ? 1 : 0;
+    }
+
+    private static boolean condition(IfOp op, Object a, Object b) {
+        if (a instanceof Integer && b instanceof Integer) {
+            int x = (Integer) a;
+            int y = (Integer) b;
+            return switch (op) {
+                case EQ -> x == y;
+                case NE -> x != y;
+                case LT -> x < y;
+                case LE -> x <= y;
+                case GT -> x > y;
+                case GE -> x >= y;
+            };
+        }
+        // references are only compared for equality
+        boolean same = a == b || isNull(a) && isNull(b);
+        return switch (op) {
+            case EQ -> same;
+            case NE -> !same;
+            default -> throw new IllegalArgumentException(op + " on references");
+        };
+    }
+
+    private static boolean isNull(Object value) {
+        return value == null || value instanceof Integer && (Integer) value == 0;
+    }
+
+    private static boolean isWide(ArgType type) {
+        return type.equals(ArgType.WIDE) || type.equals(ArgType.LONG) || type.equals(ArgType.DOUBLE);
+    }
+
+    private static Object get(Object[] regs, InsnArg arg) {
+        if (arg.isRegister()) {
+            return regs[((RegisterArg) arg).getRegNum()];
+        }
+        // literal of *-lit arithmetic and of if-*z
+        return (int) ((LiteralArg) arg).getLiteral();
+    }
+
+    private static void set(Object[] regs, InsnNode insn, Object value) {
+        regs[insn.getResult().getRegNum()] = value;
+    }
+
+    /**
+     * Register value to the value of a Java type, for intrinsics and arrays.
+     */
+    static Object box(Object value, Class<?> type) {
+        if (!type.isPrimitive()) {
+            return isNull(value) ? null : value;
+        }
+        if (type == long.class) {
+            return value;
+        }
+        if (type == double.class) {
+            return Double.longBitsToDouble((Long) value);
+        }
+        int bits = (Integer) value;
+        if (type == int.class) {
+            return bits;
+        }
+        if (type == boolean.class) {
+            return bits != 0;
+        }
+        if (type == char.class) {
+            return (char) bits;
+        }
+        if (type == byte.class) {
+            return (byte) bits;
+        }
+        if (type == short.class) {
+            return (short) bits;
+        }
+        return Float.intBitsToFloat(bits);
+    }
+
+    /**
+     * Java value to the register value.
+     */
+    static Object unbox(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof Character) {
+            return (int) (Character) value;
+        }
+        if (value instanceof Byte || value instanceof Short) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Float) {
+            return Float.floatToRawIntBits((Float) value);
+        }
+        if (value instanceof Double) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+        return value;
+    }
+
+    // result of new-instance until its constructor is called
+    private static final class Uninitialized {
+    }
+}
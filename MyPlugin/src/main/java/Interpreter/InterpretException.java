@@ -0,0 +1,31 @@
+package Interpreter;
+
+/**
+ * Interpreted call stopped, the call site is left unchanged.
+ */
+final class InterpretException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    enum Kind {
+        // instruction, call or field the interpreter can't run, the method is not tried again
+        UNSUPPORTED,
+        // instruction budget or call depth used up, the same on every run
+        BUDGET,
+        // time budget used up, depends on the machine and its load, the call may succeed another time
+        TIMEOUT,
+        // the code throws with these arguments
+        THROWN
+    }
+
+    private final Kind kind;
+
+    InterpretException(Kind kind, String message) {
+        // thrown for many calls, no stack trace needed
+        super(message, null, false, false);
+        this.kind = kind;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+}
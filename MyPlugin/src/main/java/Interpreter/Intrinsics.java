@@ -0,0 +1,98 @@
+package Interpreter;
+
+import ConstFold.PureCallTable;
+import jadx.core.dex.info.ClassInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.RootNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JDK and Android methods the interpreter may call.
+ * Besides the pure methods of {@link PureCallTable#createDefault} these may change their arguments,
+ * which are always objects made by the interpreted call, like the builder of {@code StringBuilder.append}.
+ */
+public final class Intrinsics {
+    // flag of android.util.Base64
+    private static final int BASE64_URL_SAFE = 8;
+
+    private Intrinsics() {
+    }
+
+    public static PureCallTable create(RootNode root) {
+        PureCallTable table = PureCallTable.createDefault(root);
+        for (Class<?> builder : List.of(StringBuilder.class, StringBuffer.class)) {
+            table.addConstructor(builder);
+            table.addConstructor(builder, int.class);
+            table.addConstructor(builder, String.class);
+            table.add(builder, "append", String.class);
+            table.add(builder, "append", CharSequence.class);
+            table.add(builder, "append", char.class);
+            table.add(builder, "append", char[].class);
+            table.add(builder, "append", int.class);
+            table.add(builder, "append", long.class);
+            table.add(builder, "append", boolean.class);
+            table.add(builder, "insert", int.class, char.class);
+            table.add(builder, "insert", int.class, String.class);
+            table.add(builder, "charAt", int.class);
+            table.add(builder, "setCharAt", int.class, char.class);
+            table.add(builder, "deleteCharAt", int.class);
+            table.add(builder, "setLength", int.class);
+            table.add(builder, "length");
+            table.add(builder, "reverse");
+            table.add(builder, "toString");
+        }
+        table.addConstructor(String.class, char[].class);
+        table.addConstructor(String.class, char[].class, int.class, int.class);
+        table.addConstructor(String.class, int[].class, int.class, int.class);
+        table.addConstructor(String.class, byte[].class, String.class);
+        table.add(String.class, "getBytes", String.class);
+        table.add(String.class, "toString");
+        table.add(String.class, "intern");
+        table.add(String.class, "isEmpty");
+        table.add(String.class, "equals", Object.class);
+        table.add(String.class, "hashCode");
+        table.add(String.class, "indexOf", int.class);
+        table.add(String.class, "indexOf", String.class);
+        table.add(String.class, "codePointAt", int.class);
+        table.add(System.class, "arraycopy", Object.class, int.class, Object.class, int.class, int.class);
+        table.add(Arrays.class, "copyOf", byte[].class, int.class);
+        table.add(Arrays.class, "copyOf", char[].class, int.class);
+        table.add(Arrays.class, "copyOfRange", byte[].class, int.class, int.class);
+        table.add(Arrays.class, "copyOfRange", char[].class, int.class, int.class);
+
+        // default charset on Android is UTF-8
+        ClassInfo string = ClassInfo.fromName(root, "java.lang.String");
+        ArgType bytes = ArgType.array(ArgType.BYTE);
+        table.add(MethodInfo.fromDetails(root, string, "<init>", List.of(bytes), ArgType.VOID),
+                args -> new String((byte[]) args[1], StandardCharsets.UTF_8));
+        table.add(MethodInfo.fromDetails(root, string, "getBytes", List.of(), bytes),
+                args -> ((String) args[0]).getBytes(StandardCharsets.UTF_8));
+
+        ClassInfo base64 = ClassInfo.fromName(root, "android.util.Base64");
+        table.add(MethodInfo.fromDetails(root, base64, "decode", List.of(ArgType.STRING, ArgType.INT), bytes),
+                args -> decodeBase64(((String) args[0]).getBytes(StandardCharsets.ISO_8859_1), (Integer) args[1]));
+        table.add(MethodInfo.fromDetails(root, base64, "decode", List.of(bytes, ArgType.INT), bytes),
+                args -> decodeBase64((byte[]) args[0], (Integer) args[1]));
+        return table;
+    }
+
+    // android.util.Base64 skips characters out of the alphabet, like the MIME decoder
+    private static byte[] decodeBase64(byte[] input, int flags) {
+        if ((flags & BASE64_URL_SAFE) != 0) {
+            input = input.clone();
+            for (int i = 0; i < input.length; i++) {
+                if (input[i] == '-') {
+                    input[i] = '+';
+                } else if (input[i] == '_') {
+                    input[i] = '/';
+                }
+            }
+        }
+        return Base64.getMimeDecoder().decode(input);
+    }
+}
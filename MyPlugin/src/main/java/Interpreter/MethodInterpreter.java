@@ -0,0 +1,258 @@
+package Interpreter;
+
+import ConstFold.PureCallTable;
+import ConstFold.PureFunction;
+import PassMetrics.PassMetrics;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs static methods of the app returning a String, like {@code a.b("enc", 17)} string decryptors,
+ * on the instructions decoded from the input.
+ * <p>
+ * Only JDK methods of the intrinsics table can be called, other calls, field writes outside of class initializers
+ * and reads of non-final fields stop the call. Each call has an instruction and a time budget.
+ * Results are kept by method and arguments, a method stopped by unsupported code is not run again.
+ * A call stopped by the time budget is not kept, it depends on the load of the machine and not on the code.
+ */
+public class MethodInterpreter {
+    public static final int DEFAULT_MAX_INSNS = 200_000;
+    public static final long DEFAULT_MAX_MILLIS = 50;
+    // calls kept with their result
+    private static final int MAX_RESULTS = 1 << 18;
+    // a method running out of budget this often is not run again
+    private static final int MAX_BUDGET_FAILURES = 8;
+    private static final Object FAILED = new Object();
+    private static final Object NONE = new Object();
+
+    private final RootNode root;
+    private final PureCallTable intrinsics;
+    private final int maxInsns;
+    private final long maxNanos;
+    // PureFunction of a called method or NONE
+    private final Map<MethodInfo, Object> functions = new ConcurrentHashMap<>();
+    private final Map<MethodNode, Program> programs = new ConcurrentHashMap<>();
+    // result String or FAILED
+    private final Map<CallKey, Object> results = new ConcurrentHashMap<>();
+    // static fields after <clinit> or FAILED
+    private final Map<ClassNode, Object> staticFields = new ConcurrentHashMap<>();
+    private final Map<ArgType, Class<?>> javaClasses = new ConcurrentHashMap<>();
+    private LongAdder runs = new LongAdder();
+    private LongAdder memoHits = new LongAdder();
+    private LongAdder failed = new LongAdder();
+
+    public MethodInterpreter(RootNode root, PureCallTable intrinsics) {
+        this(root, intrinsics, DEFAULT_MAX_INSNS, DEFAULT_MAX_MILLIS);
+    }
+
+    /**
+     * @param maxInsns  instructions run by one call, nested calls included
+     * @param maxMillis time of one call
+     */
+    public MethodInterpreter(RootNode root, PureCallTable intrinsics, int maxInsns, long maxMillis) {
+        this.root = root;
+        this.intrinsics = intrinsics;
+        this.maxInsns = maxInsns;
+        this.maxNanos = TimeUnit.MILLISECONDS.toNanos(maxMillis);
+    }
+
+    public void setMetrics(PassMetrics metrics) {
+        runs = metrics.counter(PassMetrics.INTERP_RUNS);
+        memoHits = metrics.counter(PassMetrics.INTERP_MEMO_HITS);
+        failed = metrics.counter(PassMetrics.INTERP_FAILED);
+    }
+
+    /**
+     * @return function running the called method, null if it is not a static method of the app returning a String
+     */
+    public PureFunction getFunction(MethodInfo callMth) {
+        Object function = functions.get(callMth);
+        if (function == null) {
+            MethodNode mth = root.resolveMethod(callMth);
+            if (mth != null && mth.getAccessFlags().isStatic() && !mth.isNoCode()
+                    && callMth.getReturnType().equals(ArgType.STRING)) {
+                function = (PureFunction) args -> call(mth, args);
+            } else {
+                function = NONE;
+            }
+            functions.putIfAbsent(callMth, function);
+        }
+        return function == NONE ? null : (PureFunction) function;
+    }
+
+    private Object call(MethodNode mth, Object[] args) {
+        Program program = getProgram(mth);
+        if (program.isDisabled()) {
+            return null;
+        }
+        CallKey key = new CallKey(mth, args);
+        Object result = results.get(key);
+        if (result != null) {
+            memoHits.increment();
+            return result == FAILED ? null : result;
+        }
+        runs.increment();
+        try {
+            // arguments are values of the caller, the call gets its own copy
+            Object[] regArgs = new Object[args.length];
+            for (int i = 0; i < args.length; i++) {
+                regArgs[i] = Execution.copy(Execution.unbox(args[i]));
+            }
+            Object value = new Execution(this, null, Set.of()).call(mth, regArgs);
+            result = value instanceof String ? value : FAILED;
+        } catch (InterpretException e) {
+            if (e.getKind() == InterpretException.Kind.TIMEOUT) {
+                failed.increment();
+                return null;
+            }
+            if (e.getKind() == InterpretException.Kind.UNSUPPORTED
+                    || e.getKind() == InterpretException.Kind.BUDGET && program.addBudgetFailure() >= MAX_BUDGET_FAILURES) {
+                program.disable();
+            }
+            result = FAILED;
+        }
+        if (result == FAILED) {
+            failed.increment();
+        }
+        if (results.size() < MAX_RESULTS) {
+            results.putIfAbsent(key, result);
+        }
+        return result == FAILED ? null : result;
+    }
+
+    Program getProgram(MethodNode mth) {
+        Program program = programs.get(mth);
+        if (program == null) {
+            program = Program.decode(mth);
+            Program prev = programs.putIfAbsent(mth, program);
+            if (prev != null) {
+                program = prev;
+            }
+        }
+        return program;
+    }
+
+    /**
+     * Static fields of the class, its class initializer is run on first use.
+     */
+    @SuppressWarnings("unchecked")
+    Map<FieldInfo, Object> getStaticFields(ClassNode cls, Execution from) throws InterpretException {
+        Object fields = staticFields.get(cls);
+        if (fields == null) {
+            if (from.getInitializing().contains(cls)) {
+                throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "initialization cycle of " + cls);
+            }
+            try {
+                // own budget, the initializer runs only once
+                fields = new Execution(this, cls, from.getInitializing()).initClass();
+            } catch (InterpretException e) {
+                // tried again by the next call
+                if (e.getKind() == InterpretException.Kind.TIMEOUT) {
+                    throw e;
+                }
+                fields = FAILED;
+            }
+            Object prev = staticFields.putIfAbsent(cls, fields);
+            if (prev != null) {
+                fields = prev;
+            }
+        }
+        if (fields == FAILED) {
+            throw new InterpretException(InterpretException.Kind.UNSUPPORTED, "class " + cls + " not initialized");
+        }
+        return (Map<FieldInfo, Object>) fields;
+    }
+
+    PureFunction getIntrinsic(MethodInfo callMth) {
+        return intrinsics.get(callMth);
+    }
+
+    /**
+     * @return class for values of the type, Object for classes of the app
+     */
+    Class<?> getJavaClass(ArgType type) {
+        Class<?> cls = javaClasses.get(type);
+        if (cls == null) {
+            cls = findJavaClass(type);
+            javaClasses.putIfAbsent(type, cls);
+        }
+        return cls;
+    }
+
+    private Class<?> findJavaClass(ArgType type) {
+        if (type.isPrimitive()) {
+            return switch (type.getPrimitiveType()) {
+                case BOOLEAN -> boolean.class;
+                case CHAR -> char.class;
+                case BYTE -> byte.class;
+                case SHORT -> short.class;
+                case INT -> int.class;
+                case FLOAT -> float.class;
+                case LONG -> long.class;
+                case DOUBLE -> double.class;
+                default -> Object.class;
+            };
+        }
+        if (type.isArray()) {
+            return getJavaClass(type.getArrayElement()).arrayType();
+        }
+        if (type.isObject() && type.getObject().startsWith("java.")) {
+            try {
+                return Class.forName(type.getObject(), false, null);
+            } catch (ClassNotFoundException e) {
+                return Object.class;
+            }
+        }
+        return Object.class;
+    }
+
+    RootNode getRoot() {
+        return root;
+    }
+
+    int getMaxInsns() {
+        return maxInsns;
+    }
+
+    long getMaxNanos() {
+        return maxNanos;
+    }
+
+    // arguments are compared by content, arrays too
+    private static final class CallKey {
+        private final MethodNode mth;
+        private final Object[] args;
+        private final int hash;
+
+        CallKey(MethodNode mth, Object[] args) {
+            this.mth = mth;
+            this.args = args;
+            this.hash = 31 * mth.hashCode() + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CallKey)) {
+                return false;
+            }
+            CallKey other = (CallKey) o;
+            return mth == other.mth && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package Interpreter;
+
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.core.dex.attributes.AType;
+import jadx.core.dex.instructions.InsnDecoder;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instructions of a method as decoded from the input, indexed by offset.
+ * They are decoded again into a private array: the method itself may be processed by another thread at the same time.
+ */
+final class Program {
+    private final MethodNode mth;
+    private final InsnNode[] insns;
+    // offset of the next instruction, -1 after the last one
+    private final int[] next;
+    private final int regsCount;
+    private final int argsStart;
+    private final AtomicInteger budgetFailures = new AtomicInteger();
+    private volatile boolean disabled;
+
+    private Program(MethodNode mth, InsnNode[] insns, int[] next, int regsCount, int argsStart) {
+        this.mth = mth;
+        this.insns = insns;
+        this.next = next;
+        this.regsCount = regsCount;
+        this.argsStart = argsStart;
+    }
+
+    static Program decode(MethodNode mth) {
+        ICodeReader codeReader = mth.getCodeReader();
+        if (codeReader == null) {
+            return disabled(mth);
+        }
+        try {
+            ICodeReader reader = codeReader.copy();
+            InsnNode[] insns = new InsnDecoder(mth).process(reader);
+            int[] next = new int[insns.length];
+            int nextOffset = -1;
+            for (int i = insns.length - 1; i >= 0; i--) {
+                next[i] = nextOffset;
+                if (insns[i] != null) {
+                    // instructions failed to decode are left as NOP
+                    if (insns[i].contains(AType.JADX_ERROR)) {
+                        return disabled(mth);
+                    }
+                    nextOffset = i;
+                }
+            }
+            return new Program(mth, insns, next, reader.getRegistersCount(), reader.getArgsStartReg());
+        } catch (Exception e) {
+            return disabled(mth);
+        }
+    }
+
+    private static Program disabled(MethodNode mth) {
+        Program program = new Program(mth, new InsnNode[0], new int[0], 0, 0);
+        program.disable();
+        return program;
+    }
+
+    MethodNode getMethod() {
+        return mth;
+    }
+
+    InsnNode[] getInsns() {
+        return insns;
+    }
+
+    int[] getNext() {
+        return next;
+    }
+
+    int getRegsCount() {
+        return regsCount;
+    }
+
+    int getArgsStart() {
+        return argsStart;
+    }
+
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    void disable() {
+        disabled = true;
+    }
+
+    /**
+     * @return budget failures of the method so far
+     */
+    int addBudgetFailure() {
+        return budgetFailures.incrementAndGet();
+    }
+}
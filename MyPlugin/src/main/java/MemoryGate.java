@@ -0,0 +1,52 @@
+/**
+ * Admission of jobs by their estimated heap use.
+ * A job starts only when its estimate fits next to the estimates of running jobs,
+ * a job estimated larger than the whole budget runs alone.
+ */
+public class MemoryGate {
+    private final long budget;
+    private final int maxRunning;
+    private long reserved;
+    private int running;
+
+    /**
+     * @param budget     heap bytes shared by running jobs
+     * @param maxRunning maximum number of running jobs
+     */
+    public MemoryGate(long budget, int maxRunning) {
+        this.budget = budget;
+        this.maxRunning = maxRunning;
+    }
+
+    /**
+     * Three quarters of the maximum heap, the rest is left for jadx caches and garbage.
+     */
+    public static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    /**
+     * Wait until the job can start.
+     *
+     * @return reserved bytes, to be passed to {@link #release(long)} when the job is done
+     */
+    public synchronized long acquire(long estimate) throws InterruptedException {
+        long amount = Math.min(estimate, budget);
+        while (running > 0 && (running >= maxRunning || reserved + amount > budget)) {
+            wait();
+        }
+        reserved += amount;
+        running++;
+        return amount;
+    }
+
+    public synchronized void release(long amount) {
+        reserved -= amount;
+        running--;
+        notifyAll();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+}
@@ -1,39 +1,249 @@
 // jadx.api
+import ConstFold.ConstFoldVisitor;
+import ConstFold.PureCallTable;
+import InsnScanner.InsnScanner;
+import Interpreter.Intrinsics;
+import Interpreter.MethodInterpreter;
+import PassMetrics.PassMetrics;
+import ReflectionVisitor.FieldSummaries;
 import ReflectionVisitor.ReflectionVisitor;
+import ResultCache.ClassResultCache;
 import jadx.api.CommentsLevel;
 import jadx.api.JadxDecompiler;
-import jadx.api.plugins.JadxPlugin;
 import jadx.api.plugins.JadxPluginInfo;
+import jadx.api.plugins.options.JadxPluginOptions;
+import jadx.api.plugins.options.OptionDescription;
+import jadx.api.plugins.options.impl.BaseOptionsParser;
+import jadx.api.plugins.options.impl.JadxOptionDescription;
 // jadx.core
+import jadx.core.Jadx;
 import jadx.core.dex.nodes.*;
 import jadx.core.dex.visitors.*;
-import jadx.core.dex.visitors.typeinference.TypeInferenceVisitor;
+import jadx.core.dex.visitors.typeinference.FinishTypeInference;
 
 // java
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
-public class MyPlugin implements JadxPlugin {
-    private final JadxPluginInfo pluginInfo = new JadxPluginInfo("my-plugin", "MyPlugins", "decode, rename and simplify rgb function");
+public class MyPlugin implements JadxPluginOptions, Closeable {
+    public static final String PLUGIN_ID = "my-plugin";
+    // plugin options, -P<name>=<value> for the jadx cli or JadxArgs.setPluginOptions
+    public static final String OPT_RENAME = PLUGIN_ID + ".rename";
+    public static final String OPT_DECODE = PLUGIN_ID + ".decode";
+    public static final String OPT_REFLECTION = PLUGIN_ID + ".reflection";
+    public static final String OPT_RGB = PLUGIN_ID + ".rgb";
+    public static final String OPT_FOLD = PLUGIN_ID + ".fold";
+    public static final String OPT_INTERPRET = PLUGIN_ID + ".interpret";
+    public static final String OPT_INCLUDE = PLUGIN_ID + ".include";
+    public static final String OPT_EXCLUDE = PLUGIN_ID + ".exclude";
+    public static final String OPT_DECODE_REPORT = PLUGIN_ID + ".decode-report";
+    public static final String OPT_RENAME_MAPPING = PLUGIN_ID + ".rename-mapping";
+    public static final String OPT_RESULT_CACHE = PLUGIN_ID + ".result-cache";
+    public static final String OPT_METRICS = PLUGIN_ID + ".metrics";
+    private static final BaseOptionsParser OPTIONS_PARSER = new BaseOptionsParser();
+    private final JadxPluginInfo pluginInfo = new JadxPluginInfo(PLUGIN_ID, "MyPlugins", "decode, rename and simplify rgb function");
     JadxDecompiler jadx;
+    // set by jadx when loaded as a service, or by the constructors
+    private Map<String, String> options = Map.of();
+    // JSONL report of decoded strings, null if not requested
+    private DecodeReport decodeReport;
+    private RenameMapping renameMapping = new RenameMapping();
+    // file to save the rename mapping to, null if not requested
+    private File renameMappingFile;
+    // results of previous runs for unchanged classes, null if not requested
+    private ClassResultCache resultCache;
+    // times of the passes and counters of their results
+    private final PassMetrics metrics = new PassMetrics();
     public MyPlugin() {
         jadx = null;
     }
     public MyPlugin(JadxDecompiler j, boolean renameOn, boolean decodeOn, boolean reflectionOn, boolean rgb) {
+        this(j, renameOn, decodeOn, reflectionOn, rgb, null, null);
+    }
+    public MyPlugin(JadxDecompiler j, boolean renameOn, boolean decodeOn, boolean reflectionOn, boolean rgb,
+                    File decodeReportFile, File renameMappingFile) {
+        this(j, renameOn, decodeOn, reflectionOn, rgb, decodeReportFile, renameMappingFile, null);
+    }
+    /**
+     * @param decodeReportFile  file for the JSONL report of decoded strings, null to disable it
+     * @param renameMappingFile aliases of the previous run are read from it (if it exists),
+     *                          aliases of this run are saved to it on {@link #close()}; null to disable it
+     * @param resultCacheFile   results of the string, reflection and rgb passes for unchanged classes,
+     *                          new results are added to it on {@link #close()}; null to disable it
+     */
+    public MyPlugin(JadxDecompiler j, boolean renameOn, boolean decodeOn, boolean reflectionOn, boolean rgb,
+                    File decodeReportFile, File renameMappingFile, File resultCacheFile) {
+        this(j, toOptions(renameOn, decodeOn, reflectionOn, rgb, decodeReportFile, renameMappingFile, resultCacheFile));
+    }
+    /**
+     * Register the passes selected by the options, see {@link #getOptionsDescriptions()}.
+     */
+    public MyPlugin(JadxDecompiler j, Map<String, String> options) {
+        this.options = options;
+        registerPasses(j);
+    }
+    private static Map<String, String> toOptions(boolean renameOn, boolean decodeOn, boolean reflectionOn, boolean rgb,
+                                                 File decodeReportFile, File renameMappingFile, File resultCacheFile) {
+        Map<String, String> options = new HashMap<>();
+        options.put(OPT_RENAME, renameOn ? "yes" : "no");
+        options.put(OPT_DECODE, decodeOn ? "yes" : "no");
+        options.put(OPT_REFLECTION, reflectionOn ? "yes" : "no");
+        options.put(OPT_RGB, rgb ? "yes" : "no");
+        if (decodeReportFile != null) {
+            options.put(OPT_DECODE_REPORT, decodeReportFile.getPath());
+        }
+        if (renameMappingFile != null) {
+            options.put(OPT_RENAME_MAPPING, renameMappingFile.getPath());
+        }
+        if (resultCacheFile != null) {
+            options.put(OPT_RESULT_CACHE, resultCacheFile.getPath());
+        }
+        return options;
+    }
+    @Override
+    public void setOptions(Map<String, String> options) {
+        this.options = options;
+    }
+    @Override
+    public List<OptionDescription> getOptionsDescriptions() {
+        List<String> flag = List.of("yes", "no");
+        return List.of(
+                new JadxOptionDescription(OPT_RENAME, "rename obfuscated classes, methods and fields", "no", flag),
+                new JadxOptionDescription(OPT_DECODE, "decode encoded strings and add them as comments", "no", flag),
+                new JadxOptionDescription(OPT_REFLECTION, "replace reflection calls with direct calls", "yes", flag),
+                new JadxOptionDescription(OPT_RGB, "fold Color.rgb calls with constant arguments", "no", flag),
+                new JadxOptionDescription(OPT_FOLD, "fold calls of pure JDK methods with constant arguments", "no", flag),
+                new JadxOptionDescription(OPT_INTERPRET, "run static string decryptors of the app and replace their calls", "no", flag),
+                new JadxOptionDescription(OPT_INCLUDE, "comma separated package prefixes to process, empty for all", "", List.of()),
+                new JadxOptionDescription(OPT_EXCLUDE, "comma separated package prefixes to skip, like androidx,kotlin", "", List.of()),
+                new JadxOptionDescription(OPT_DECODE_REPORT, "JSONL file of the decoded strings", "", List.of()),
+                new JadxOptionDescription(OPT_RENAME_MAPPING, "rename mapping read at start and saved on close", "", List.of()),
+                new JadxOptionDescription(OPT_RESULT_CACHE, "results of unchanged classes kept between runs", "", List.of()),
+                new JadxOptionDescription(OPT_METRICS, "time each pass per class and method", "yes", flag));
+    }
+    private File getFileOption(String name) {
+        String path = options.getOrDefault(name, "").trim();
+        return path.isEmpty() ? null : new File(path);
+    }
+    /**
+     * Add the passes selected by the options to the loaded decompiler.
+     * jadx only gives the options to the plugin it loads as a service, call this on that instance after {@link JadxDecompiler#load()}.
+     */
+    public void register(JadxDecompiler j) {
+        registerPasses(j);
+    }
+    // not overridable, also called from the constructor
+    private void registerPasses(JadxDecompiler j) {
+        if (jadx != null) {
+            throw new IllegalStateException("Passes of " + PLUGIN_ID + " already registered");
+        }
         this.jadx = j;
+        boolean renameOn = OPTIONS_PARSER.getBooleanOption(options, OPT_RENAME, false);
+        boolean decodeOn = OPTIONS_PARSER.getBooleanOption(options, OPT_DECODE, false);
+        boolean reflectionOn = OPTIONS_PARSER.getBooleanOption(options, OPT_REFLECTION, true);
+        boolean rgb = OPTIONS_PARSER.getBooleanOption(options, OPT_RGB, false);
+        boolean foldOn = OPTIONS_PARSER.getBooleanOption(options, OPT_FOLD, false);
+        boolean interpretOn = OPTIONS_PARSER.getBooleanOption(options, OPT_INTERPRET, false);
+        File decodeReportFile = getFileOption(OPT_DECODE_REPORT);
+        File renameMappingFile = getFileOption(OPT_RENAME_MAPPING);
+        File resultCacheFile = getFileOption(OPT_RESULT_CACHE);
+        metrics.setTimed(OPTIONS_PARSER.getBooleanOption(options, OPT_METRICS, true));
+        // classes of the excluded packages are not touched by any pass
+        PackageFilter packageFilter = PackageFilter.parse(options.getOrDefault(OPT_INCLUDE, ""), options.getOrDefault(OPT_EXCLUDE, ""));
         RootNode root = jadx.getRoot();
         List<IDexTreeVisitor> passes = root.getPasses();
         if (renameOn) {
-            appendCustomPass(passes, new MyRenameVisitor(root));
+            if (renameMappingFile != null) {
+                try {
+                    renameMapping = RenameMapping.load(renameMappingFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to load rename mapping " + renameMappingFile, e);
+                }
+                this.renameMappingFile = renameMappingFile;
+            }
+            MyRenameVisitor renameVisitor = new MyRenameVisitor(root, renameMapping);
+            renameVisitor.setClassFilter(packageFilter);
+            renameVisitor.setMetrics(metrics);
+            appendCustomPass(passes, metrics.wrap(renameVisitor));
+        }
+        // instruction based passes share one walk over each method, placed where SSA and types are ready
+        InsnScanner scanner = new InsnScanner();
+        // strings are collected right after the instructions are decoded, before SSA and type inference,
+        // so methods these passes fail on still get their decode comments
+        InsnScanner stringScanner = new InsnScanner();
+        if (!packageFilter.isAll()) {
+            scanner.setClassFilter(packageFilter);
+            stringScanner.setClassFilter(packageFilter);
         }
         if (decodeOn) {
             root.getArgs().setCommentsLevel(CommentsLevel.USER_ONLY);
-            addCustomPassAfter(passes, AttachTryCatchVisitor.class, new DecodeVisitor());
+            if (decodeReportFile != null) {
+                try {
+                    decodeReport = new DecodeReport(decodeReportFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to create decode report " + decodeReportFile, e);
+                }
+            }
+            DecodeEngine engine = new DecodeEngine();
+            DecodeVisitor decodeVisitor = new DecodeVisitor(new DecodeCache(), engine, decodeReport);
+            // strings of the whole input are classified once, classes without candidates are not scanned
+            decodeVisitor.setPrescan(new StringPrescan(root, engine, packageFilter));
+            decodeVisitor.setMetrics(metrics);
+            stringScanner.addHandler(decodeVisitor);
+            // results are kept packed until then, comment text is only built right before code generation
+            appendCustomPass(passes, metrics.wrap(decodeVisitor.createCommentVisitor()));
         }
         if (reflectionOn) {
-            appendCustomPass(passes, new ReflectionVisitor(jadx));
+            ReflectionVisitor reflectionVisitor = new ReflectionVisitor(jadx);
+            // Method and Class objects kept in static fields by <clinit>
+            reflectionVisitor.setFieldSummaries(new FieldSummaries(root));
+            reflectionVisitor.setMetrics(metrics);
+            scanner.addHandler(reflectionVisitor);
         }
         if (rgb) {
-            addCustomPassAfter(passes, TypeInferenceVisitor.class, new RGBVisitor());
+            RGBVisitor rgbVisitor = new RGBVisitor();
+            rgbVisitor.setMetrics(metrics);
+            scanner.addHandler(rgbVisitor);
+        }
+        if (foldOn || interpretOn) {
+            // calls of the JDK like Integer.parseInt("123"), the interpreter alone uses an empty table
+            ConstFoldVisitor constFoldVisitor = new ConstFoldVisitor(foldOn ? PureCallTable.createDefault(root) : new PureCallTable(root));
+            if (interpretOn) {
+                // app code runs at decompile time, calls of string decryptors are replaced with their result
+                MethodInterpreter interpreter = new MethodInterpreter(root, Intrinsics.create(root));
+                interpreter.setMetrics(metrics);
+                constFoldVisitor.setInterpreter(interpreter);
+            }
+            constFoldVisitor.setMetrics(metrics);
+            scanner.addHandler(constFoldVisitor);
+        }
+        if (resultCacheFile != null && !(scanner.isEmpty() && stringScanner.isEmpty())) {
+            try {
+                // instructions seen by the passes depend on the jadx version
+                resultCache = ClassResultCache.open(resultCacheFile, "jadx " + Jadx.getVersion());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open result cache " + resultCacheFile, e);
+            }
+            metrics.gauge("cache.results.hits", resultCache::getHits);
+            metrics.gauge("cache.results.misses", resultCache::getMisses);
+        }
+        if (!stringScanner.isEmpty()) {
+            stringScanner.setCache(resultCache);
+            stringScanner.setMetrics(metrics);
+            addCustomPassAfter(passes, AttachTryCatchVisitor.class, metrics.wrap("StringScanner", stringScanner));
+        }
+        if (!scanner.isEmpty()) {
+            // methods calling reflection and color APIs are found once, other methods are not scanned for these passes
+            scanner.buildCalleeIndex(root);
+            if (scanner.getCalleeIndex() != null) {
+                metrics.gauge("scan.index.methods", scanner.getCalleeIndex()::size);
+            }
+            scanner.setCache(resultCache);
+            scanner.setMetrics(metrics);
+            addCustomPassAfter(passes, FinishTypeInference.class, metrics.wrap(scanner));
         }
     }
 
@@ -118,6 +328,27 @@ public class MyPlugin implements JadxPlugin {
         }
         return builder.toString();
     }
+    /**
+     * Finish the decode report, save the rename mapping and the result cache, call after the classes were processed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (decodeReport != null) {
+            decodeReport.close();
+        }
+        if (renameMappingFile != null) {
+            renameMapping.save(renameMappingFile);
+        }
+        if (resultCache != null) {
+            resultCache.close();
+        }
+    }
+    /**
+     * Times and counters of the passes, complete after {@link JadxDecompiler#save()}.
+     */
+    public PassMetrics getMetrics() {
+        return metrics;
+    }
     public JadxPluginInfo getPluginInfo() {
         return this.pluginInfo;
     }
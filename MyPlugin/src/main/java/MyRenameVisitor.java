@@ -1,3 +1,4 @@
+import PassMetrics.PassMetrics;
 import jadx.core.dex.instructions.args.ArgType;
 import jadx.core.dex.nodes.ClassNode;
 import jadx.core.dex.nodes.FieldNode;
@@ -5,64 +6,102 @@ import jadx.core.dex.nodes.MethodNode;
 import jadx.core.dex.nodes.RootNode;
 import jadx.core.dex.visitors.AbstractVisitor;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 public class MyRenameVisitor extends AbstractVisitor {
+    // char counters of isObfuscationName, reused by each thread
+    private static final ThreadLocal<int[]> CHAR_COUNTS = ThreadLocal.withInitial(() -> new int[128]);
     private final RootNode root;
+    // short names of types used in method and field aliases
+    private final Map<ArgType, String> typeNames = new ConcurrentHashMap<>();
+    private final NameAllocator allocator;
+    // aliases of the previous run, also collects aliases of this run
+    private final RenameMapping mapping;
+    private volatile RenamePlan plan;
+    // classes to rename, others are left as they are
+    private Predicate<ClassNode> classFilter = cls -> true;
+    private LongAdder classesRenamed = new LongAdder();
+    private LongAdder methodsRenamed = new LongAdder();
+    private LongAdder fieldsRenamed = new LongAdder();
 
     public MyRenameVisitor() {
-        root = null;
+        this(null);
     }
 
     public MyRenameVisitor(RootNode root) {
+        this(root, new RenameMapping());
+    }
+
+    public MyRenameVisitor(RootNode root, RenameMapping mapping) {
         this.root = root;
+        this.allocator = new NameAllocator(root);
+        this.mapping = mapping;
+    }
+
+    public void setClassFilter(Predicate<ClassNode> classFilter) {
+        this.classFilter = classFilter;
+    }
+
+    public void setMetrics(PassMetrics metrics) {
+        classesRenamed = metrics.counter(PassMetrics.CLASSES_RENAMED);
+        methodsRenamed = metrics.counter(PassMetrics.METHODS_RENAMED);
+        fieldsRenamed = metrics.counter(PassMetrics.FIELDS_RENAMED);
     }
 
     @Override
     public boolean visit(ClassNode classNode) {
-        // rename classNode
-        if (!classNode.getClassInfo().hasAlias() && isObfuscationName(classNode.getFullName())) {
-            renameClass(classNode);
+        // rename all classes before the first class is done
+        getPlan();
+        if (!classFilter.test(classNode)) {
+            return false;
         }
 
         // rename method
         for (MethodNode methodNode : classNode.getMethods()) {
-            if (!methodNode.isConstructor() && !methodNode.getMethodInfo().hasAlias() && !methodNode.isDefaultConstructor() && isObfuscationName(methodNode.getName())) {
-                renameMethod(methodNode);
+            if (!methodNode.isConstructor() && !methodNode.getMethodInfo().hasAlias() && !methodNode.isDefaultConstructor()) {
+                // alias from the mapping, or the heuristic for names not seen before
+                String known = mapping.getMethodAlias(methodNode);
+                if (known != null) {
+                    setMethodAlias(methodNode, known);
+                } else if (isObfuscationName(methodNode.getName())) {
+                    renameMethod(methodNode);
+                }
             }
         }
         // rename field
         for (FieldNode fieldNode : classNode.getFields()) {
-            if (!fieldNode.getFieldInfo().isRenamed() && isObfuscationName(fieldNode.getName())) {
-                renameField(fieldNode);
+            if (!fieldNode.getFieldInfo().isRenamed()) {
+                String known = mapping.getFieldAlias(fieldNode);
+                if (known != null) {
+                    setFieldAlias(fieldNode, known);
+                } else if (isObfuscationName(fieldNode.getName())) {
+                    renameField(fieldNode);
+                }
             }
         }
         return true;
     }
 
-    public void renameClass(ClassNode classNode) {
-        String oldName = classNode.getShortName();
-        StringBuilder newName = new StringBuilder();
-        // first the first three letters of the oldName to distinguish the same inheritance
-        if (oldName.length() < 3) {
-            newName.append(oldName);
-        } else {
-            newName.append(oldName, 0, 3);
-        }
-
-        // classNode has super Class
-        if (!classNode.getSuperClass().equals(ArgType.OBJECT)) {
-            visitSuperTypes(classNode.getType(), newName);
-        }
-        // class without extends but has interfaces
-        else if (!classNode.getInterfaces().isEmpty()) {
-            visitInterfacesType(classNode.getType(), newName);
-        } else {
-            newName.append("Class");
+    // the plan needs all classes, it is built and applied on the first visit
+    public RenamePlan getPlan() {
+        RenamePlan result = plan;
+        if (result == null) {
+            synchronized (this) {
+                result = plan;
+                if (result == null) {
+                    result = RenamePlan.build(root, allocator, mapping, classFilter);
+                    result.apply();
+                    classesRenamed.add(result.size());
+                    plan = result;
+                }
+            }
         }
-        classNode.getClassInfo().changeShortName(newName.toString());
+        return result;
     }
 
     public void renameMethod(MethodNode methodNode) {
@@ -74,133 +113,139 @@ public class MyRenameVisitor extends AbstractVisitor {
             newName.append("_null");
         } else {
             for (ArgType param : methodNode.getArgTypes()) {
-                newName.append("_").append(MyPlugin.extractType(param.toString()));
+                newName.append("_").append(getTypeName(param));
             }
         }
-        methodNode.getMethodInfo().setAlias(newName.toString());
+        setMethodAlias(methodNode, newName.toString());
     }
 
     public void renameField(FieldNode fieldNode) {
         String oldName = fieldNode.getName();
         StringBuilder newName = new StringBuilder();
-        newName.append(oldName).append("_").append(MyPlugin.extractType(fieldNode.getType().toString()));
-        fieldNode.rename(newName.toString());
-    }
-    public void visitInterfacesType(ArgType type, StringBuilder newName) {
-        ClassNode classNode = this.root.resolveClass(type);
-        Iterator<ArgType> ifaces = null;
-        if (classNode != null) {
-            ifaces = classNode.getInterfaces().iterator();
-        }
-        if (ifaces != null) {
-            while (ifaces.hasNext()) {
-                ArgType iface = ifaces.next();
-                String ifaceName = MyPlugin.extractClassName(iface.getObject());
-                if (ifaceName != null) {
-                    // name of super is obfuscation
-                    if (isObfuscationName(ifaceName)) {
-                        ClassNode ifaceClass = this.root.resolveClass(ifaceName);
-                        if (ifaceClass != null) {
-                            renameClass(ifaceClass);
-                            ifaceName = ifaceClass.getClassInfo().getAliasShortName();
-                            newName.append(ifaceName);
-                            return;
-                        }
-                    } else {
-                        newName.append(ifaceName);
-                    }
-                }
-                visitInterfacesType(iface, newName);
-            }
-        }
+        newName.append(oldName).append("_").append(getTypeName(fieldNode.getType()));
+        setFieldAlias(fieldNode, newName.toString());
     }
-    public void visitSuperTypes(ArgType type, StringBuilder newName) {
-        ClassNode classNode = this.root.resolveClass(type);
-        if (classNode != null) {
-            ArgType thisType = classNode.getType();
-            ArgType superType = classNode.getSuperClass();
-            if (superType != null && !superType.equals(ArgType.OBJECT)) {
-                String superName = MyPlugin.extractClassName(superType.getObject());
-                if (superName != null) {
-                    // name of super is obfuscation
-                    if (isObfuscationName(superName)) {
-                        ClassNode superClass = this.root.resolveClass(superType);
-                        if (superClass != null) {
-                            renameClass(superClass);
-                            superName = superClass.getClassInfo().getAliasShortName();
-                            newName.append(superName);
-                            return;
-                        }
-                    } else {
-                        newName.append(superName);
-                    }
-                }
-                visitSuperTypes(superType, newName);
-            }
-        }
+
+    private void setMethodAlias(MethodNode methodNode, String wanted) {
+        String alias = allocator.allocateMethodName(methodNode, wanted);
+        methodNode.getMethodInfo().setAlias(alias);
+        mapping.addMethod(methodNode, alias);
+        methodsRenamed.increment();
     }
 
-    private boolean isObfuscationName(String fullname) {
-        HashMap<Character, Integer> count = new HashMap<>();
-        String[] part = fullname.split("\\.");
-        if (part.length >= 2) {
-            String first = part[0];
-            String second = part[1];
-            if (first.equals("android") || first.equals("androidx") || first.equals("java") || first.equals("kotlin")
-                    || first.equals("kotlinx") || (first.equals("com") && second.equals("google"))) {
-                return false;
-            }
-        }
-        String name;
-        if (part.length > 0) {
-            name = part[part.length - 1];
+    private void setFieldAlias(FieldNode fieldNode, String wanted) {
+        String alias = allocator.allocateFieldName(fieldNode, wanted);
+        fieldNode.rename(alias);
+        mapping.addField(fieldNode, alias);
+        fieldsRenamed.increment();
+    }
+
+    public RenameMapping getMapping() {
+        return mapping;
+    }
+    private String getTypeName(ArgType type) {
+        return typeNames.computeIfAbsent(type, t -> MyPlugin.extractType(t.toString()));
+    }
+    /**
+     * Check a batch of names at once, same as calling {@link #isObfuscationName(String)} for each of them.
+     */
+    public static boolean[] isObfuscationNames(String[] names) {
+        boolean[] result = new boolean[names.length];
+        // one counter array for the whole batch
+        int[] count = new int[128];
+        for (int i = 0; i < names.length; i++) {
+            result[i] = isObfuscationName(names[i], count);
+        }
+        return result;
+    }
+
+    public static boolean isObfuscationName(String fullname) {
+        return isObfuscationName(fullname, CHAR_COUNTS.get());
+    }
+
+    // parts are the same as fullname.split("\\."), without allocating them
+    private static boolean isObfuscationName(String fullname, int[] count) {
+        // trailing empty parts are dropped by split
+        int end = fullname.length();
+        while (end > 0 && fullname.charAt(end - 1) == '.') {
+            end--;
+        }
+        int start = 0;
+        if (end == 0) {
+            // no parts, the whole name is checked
+            end = fullname.length();
         } else {
-            name = fullname;
+            int firstDot = fullname.indexOf('.');
+            if (firstDot >= 0 && firstDot < end) {
+                int secondEnd = fullname.indexOf('.', firstDot + 1);
+                if (secondEnd < 0 || secondEnd > end) {
+                    secondEnd = end;
+                }
+                if (isPart(fullname, 0, firstDot, "android") || isPart(fullname, 0, firstDot, "androidx")
+                        || isPart(fullname, 0, firstDot, "java") || isPart(fullname, 0, firstDot, "kotlin")
+                        || isPart(fullname, 0, firstDot, "kotlinx")
+                        || (isPart(fullname, 0, firstDot, "com") && isPart(fullname, firstDot + 1, secondEnd, "google"))) {
+                    return false;
+                }
+                start = fullname.lastIndexOf('.', end - 1) + 1;
+            }
         }
-        int len = name.length();
+        int len = end - start;
 
-        if (name.equals("<clinit>"))
+        if (isPart(fullname, start, end, "<clinit>"))
             return false;
         // Class R
-        if (name.equals("R"))
+        if (len == 1 && fullname.charAt(start) == 'R')
             return false;
 
         // Length equals 1
         if (len == 1) {
             return true;
         }
+        if (len == 0) {
+            return false;
+        }
 
         // Starts with a digit
-        if (Character.isDigit(name.charAt(0))) {
+        if (Character.isDigit(fullname.charAt(start))) {
             return true;
         }
 
         // Contains special characters
-        if (!name.matches("[a-zA-Z0-9$_]+")) {
-            return true;
+        for (int i = start; i < end; i++) {
+            if (!isNameChar(fullname.charAt(i))) {
+                return true;
+            }
         }
 
         // Repeated character occurrence more than 3 times
-        for (int i = 0; i < len; i++) {
-            if ((i < len - 3)) {
-                char c0 = Character.toLowerCase(name.charAt(i));
-                char c1 = Character.toLowerCase(name.charAt(i + 1));
-                char c2 = Character.toLowerCase(name.charAt(i + 2));
-                if (c0 == c1 && c1 == c2) {
-                    return true;
-                }
+        // (only ASCII is left, so lower case is a bit flip for letters)
+        boolean countChars = len > 10;
+        if (countChars) {
+            Arrays.fill(count, 0);
+        }
+        for (int i = start; i < end; i++) {
+            int c = toLowerAscii(fullname.charAt(i));
+            if (i < end - 3 && c == toLowerAscii(fullname.charAt(i + 1)) && c == toLowerAscii(fullname.charAt(i + 2))) {
+                return true;
             }
-            Character c = Character.toLowerCase(name.charAt(i));
-            if (count.containsKey(c)) {
-                int time = count.get(c);
-                if (len > 10 && (time == len / 3))
-                    return true;
-                count.put(c, time + 1);
-            } else {
-                count.put(c, 1);
+            if (countChars && count[c]++ == len / 3) {
+                return true;
             }
         }
 
         return false;
     }
+
+    private static boolean isPart(String s, int start, int end, String part) {
+        return end - start == part.length() && s.startsWith(part, start);
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '$' || c == '_';
+    }
+
+    private static int toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? c | 0x20 : c;
+    }
 }
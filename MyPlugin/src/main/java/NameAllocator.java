@@ -0,0 +1,113 @@
+import jadx.core.dex.info.ClassInfo;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unique aliases for renamed classes, methods and fields.
+ * Class names are unique in their package (or outer class for inner classes), member names in their class.
+ * Each scope has its own lock, so classes processed by different threads don't wait for each other.
+ * A taken name gets the first free number suffix, so the result depends only on the order of requests in a scope.
+ */
+public class NameAllocator {
+    private final RootNode root;
+    // built on first use, from the names classes have at that time
+    private volatile Map<String, Scope> classScopes;
+    private final Map<ClassNode, Scope> methodScopes = new ConcurrentHashMap<>();
+    private final Map<ClassNode, Scope> fieldScopes = new ConcurrentHashMap<>();
+
+    public NameAllocator(RootNode root) {
+        this.root = root;
+    }
+
+    public String allocateClassName(ClassNode classNode, String wanted) {
+        return getClassScopes().computeIfAbsent(getClassScopeKey(classNode.getClassInfo()), key -> new Scope(true)).allocate(wanted);
+    }
+
+    public String allocateMethodName(MethodNode methodNode, String wanted) {
+        return methodScopes.computeIfAbsent(methodNode.getParentClass(), NameAllocator::createMethodScope).allocate(wanted);
+    }
+
+    public String allocateFieldName(FieldNode fieldNode, String wanted) {
+        return fieldScopes.computeIfAbsent(fieldNode.getParentClass(), NameAllocator::createFieldScope).allocate(wanted);
+    }
+
+    private static String getClassScopeKey(ClassInfo classInfo) {
+        ClassInfo parent = classInfo.getParentClass();
+        return parent != null ? parent.getRawName() + '$' : classInfo.getPackage() + '.';
+    }
+
+    // names of all classes by package or outer class, case is ignored as classes are saved to files
+    private Map<String, Scope> getClassScopes() {
+        Map<String, Scope> scopes = classScopes;
+        if (scopes == null) {
+            synchronized (this) {
+                scopes = classScopes;
+                if (scopes == null) {
+                    scopes = new ConcurrentHashMap<>();
+                    for (ClassNode classNode : root.getClasses()) {
+                        ClassInfo classInfo = classNode.getClassInfo();
+                        Scope scope = scopes.computeIfAbsent(getClassScopeKey(classInfo), key -> new Scope(true));
+                        scope.reserve(classInfo.getShortName());
+                        scope.reserve(classInfo.getAliasShortName());
+                    }
+                    classScopes = scopes;
+                }
+            }
+        }
+        return scopes;
+    }
+
+    private static Scope createMethodScope(ClassNode classNode) {
+        Scope scope = new Scope(false);
+        for (MethodNode methodNode : classNode.getMethods()) {
+            scope.reserve(methodNode.getName());
+            scope.reserve(methodNode.getAlias());
+        }
+        return scope;
+    }
+
+    private static Scope createFieldScope(ClassNode classNode) {
+        Scope scope = new Scope(false);
+        for (FieldNode fieldNode : classNode.getFields()) {
+            scope.reserve(fieldNode.getName());
+            scope.reserve(fieldNode.getAlias());
+        }
+        return scope;
+    }
+
+    public static class Scope {
+        private final boolean ignoreCase;
+        private final Set<String> taken = new HashSet<>();
+
+        public Scope(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+        }
+
+        public synchronized void reserve(String name) {
+            taken.add(key(name));
+        }
+
+        /**
+         * @return {@code wanted} if it is free, otherwise {@code wanted} with the first free suffix 2, 3, ...
+         */
+        public synchronized String allocate(String wanted) {
+            String name = wanted;
+            for (int suffix = 2; !taken.add(key(name)); suffix++) {
+                name = wanted + suffix;
+            }
+            return name;
+        }
+
+        private String key(String name) {
+            return ignoreCase ? name.toLowerCase(Locale.ROOT) : name;
+        }
+    }
+}
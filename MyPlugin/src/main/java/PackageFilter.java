@@ -0,0 +1,82 @@
+import jadx.core.dex.nodes.ClassNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Package prefixes of the classes the passes work on, like {@code androidx} or {@code com.google.android.gms.*}.
+ * A prefix matches the package and its sub packages, an excluded prefix wins over an included one.
+ * With no include prefixes all classes not excluded are accepted.
+ */
+public class PackageFilter implements Predicate<ClassNode> {
+    public static final PackageFilter ALL = new PackageFilter(List.of(), List.of());
+
+    private final List<String> includes;
+    private final List<String> excludes;
+
+    public PackageFilter(List<String> includes, List<String> excludes) {
+        this.includes = normalize(includes);
+        this.excludes = normalize(excludes);
+    }
+
+    /**
+     * @param includes comma separated prefixes, empty to include all
+     * @param excludes comma separated prefixes
+     */
+    public static PackageFilter parse(String includes, String excludes) {
+        return new PackageFilter(split(includes), split(excludes));
+    }
+
+    private static List<String> split(String prefixes) {
+        List<String> list = new ArrayList<>();
+        for (String prefix : prefixes.split(",")) {
+            if (!prefix.isBlank()) {
+                list.add(prefix.trim());
+            }
+        }
+        return list;
+    }
+
+    // "a.b.*" and "a.b." are the same as "a.b", matched with the dot after it
+    private static List<String> normalize(List<String> prefixes) {
+        List<String> list = new ArrayList<>(prefixes.size());
+        for (String prefix : prefixes) {
+            String p = prefix;
+            while (p.endsWith("*") || p.endsWith(".")) {
+                p = p.substring(0, p.length() - 1);
+            }
+            list.add(p.isEmpty() ? "" : p + '.');
+        }
+        return list;
+    }
+
+    public boolean isAll() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * Check the class by its original name, inner classes by the name of their top class.
+     */
+    @Override
+    public boolean test(ClassNode cls) {
+        return accepts(cls.getTopParentClass().getClassInfo().getRawName());
+    }
+
+    public boolean accepts(String clsName) {
+        for (String prefix : excludes) {
+            if (clsName.startsWith(prefix)) {
+                return false;
+            }
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : includes) {
+            if (clsName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package PassMetrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One pass run on one class. The event duration includes inner classes, the times don't.
+ */
+@Name("myplugin.ClassPass")
+@Label("Plugin Pass on Class")
+@Category({"MyPlugin", "Passes"})
+@Description("Time spent by a plugin pass on one class")
+public class ClassPassEvent extends Event {
+    @Label("Pass")
+    public String pass;
+
+    @Label("Class")
+    public String className;
+
+    @Label("Wall Time")
+    @Timespan
+    public long wallTime;
+
+    @Label("CPU Time")
+    @Timespan
+    public long cpuTime;
+}
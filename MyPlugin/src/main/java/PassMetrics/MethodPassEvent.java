@@ -0,0 +1,34 @@
+package PassMetrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One pass run on one method.
+ */
+@Name("myplugin.MethodPass")
+@Label("Plugin Pass on Method")
+@Category({"MyPlugin", "Passes"})
+@Description("Time spent by a plugin pass on one method")
+public class MethodPassEvent extends Event {
+    @Label("Pass")
+    public String pass;
+
+    @Label("Class")
+    public String className;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Wall Time")
+    @Timespan
+    public long wallTime;
+
+    @Label("CPU Time")
+    @Timespan
+    public long cpuTime;
+}
@@ -0,0 +1,95 @@
+package PassMetrics;
+
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+import jadx.core.dex.visitors.DepthTraversal;
+import jadx.core.dex.visitors.IDexTreeVisitor;
+import jadx.core.utils.exceptions.JadxException;
+
+/**
+ * Pass timing another pass. Walks inner classes and methods itself (in the same order as jadx),
+ * so the time of a class is its own visit and its methods.
+ * Passes walking methods on their own get only class times.
+ */
+public class MetricsVisitor implements IDexTreeVisitor {
+    private final IDexTreeVisitor pass;
+    private final PassStats stats;
+
+    public MetricsVisitor(IDexTreeVisitor pass, PassStats stats) {
+        this.pass = pass;
+        this.stats = stats;
+    }
+
+    public IDexTreeVisitor getPass() {
+        return pass;
+    }
+
+    @Override
+    public void init(RootNode root) throws JadxException {
+        pass.init(root);
+    }
+
+    @Override
+    public boolean visit(ClassNode cls) throws JadxException {
+        ClassPassEvent event = new ClassPassEvent();
+        event.begin();
+        long wall = System.nanoTime();
+        long cpu = PassMetrics.cpuTime();
+        boolean visitInner = pass.visit(cls);
+        wall = System.nanoTime() - wall;
+        cpu = PassMetrics.cpuTime() - cpu;
+        if (visitInner) {
+            for (ClassNode inner : cls.getInnerClasses()) {
+                DepthTraversal.visit(this, inner);
+            }
+            long methodsWall = System.nanoTime();
+            long methodsCpu = PassMetrics.cpuTime();
+            for (MethodNode mth : cls.getMethods()) {
+                DepthTraversal.visit(this, mth);
+            }
+            wall += System.nanoTime() - methodsWall;
+            cpu += PassMetrics.cpuTime() - methodsCpu;
+        }
+        String clsName = cls.getClassInfo().getRawName();
+        stats.addClass(clsName, wall, cpu);
+        event.end();
+        if (event.shouldCommit()) {
+            event.pass = stats.getName();
+            event.className = clsName;
+            event.wallTime = wall;
+            event.cpuTime = cpu;
+            event.commit();
+        }
+        return false;
+    }
+
+    @Override
+    public void visit(MethodNode mth) throws JadxException {
+        MethodPassEvent event = new MethodPassEvent();
+        event.begin();
+        long wall = System.nanoTime();
+        long cpu = PassMetrics.cpuTime();
+        try {
+            pass.visit(mth);
+        } finally {
+            wall = System.nanoTime() - wall;
+            cpu = PassMetrics.cpuTime() - cpu;
+            stats.addMethod(mth, wall, cpu);
+            event.end();
+            if (event.shouldCommit()) {
+                event.pass = stats.getName();
+                event.className = mth.getParentClass().getClassInfo().getRawName();
+                event.method = mth.getMethodInfo().getShortId();
+                event.wallTime = wall;
+                event.cpuTime = cpu;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pass.toString();
+    }
+}
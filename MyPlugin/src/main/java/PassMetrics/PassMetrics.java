@@ -0,0 +1,115 @@
+package PassMetrics;
+
+import jadx.core.dex.visitors.IDexTreeVisitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Times and counters of the plugin passes for one decompiled APK.
+ * Passes are timed by wrapping them with {@link #wrap}, which also emits {@link ClassPassEvent} and {@link MethodPassEvent}.
+ * Timing can be turned off with {@link #setTimed}, counters are always kept.
+ */
+public class PassMetrics {
+    // counters of the plugin passes
+    public static final String STRINGS_SCANNED = "decode.strings.scanned";
+    public static final String STRINGS_DECODED = "decode.strings.decoded";
+    public static final String STRINGS_REPLAYED = "decode.strings.replayed";
+    public static final String CLASSES_RENAMED = "rename.classes";
+    public static final String METHODS_RENAMED = "rename.methods";
+    public static final String FIELDS_RENAMED = "rename.fields";
+    public static final String RGB_FOLDED = "rgb.folded";
+    public static final String CALLS_FOLDED = "fold.calls";
+    public static final String INTERP_RUNS = "interp.runs";
+    public static final String INTERP_MEMO_HITS = "interp.memo.hits";
+    public static final String INTERP_FAILED = "interp.failed";
+    public static final String REFLECTION_FOUND = "reflection.found";
+    public static final String REFLECTION_REWRITTEN = "reflection.rewritten";
+    public static final String REFLECTION_FAILED = "reflection.failed";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final List<PassStats> passes = new CopyOnWriteArrayList<>();
+    // sorted by name for the summary
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private boolean timed = true;
+
+    /**
+     * @return CPU time of the current thread, 0 if the JVM can't measure it
+     */
+    public static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * @param timed false to run wrapped passes without timing them, set before {@link #wrap}
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Time the pass and send events for it, the returned pass is used instead of it.
+     */
+    public IDexTreeVisitor wrap(IDexTreeVisitor pass) {
+        return wrap(pass.getClass().getSimpleName(), pass);
+    }
+
+    /**
+     * @param name name of the pass in the summary, for several passes of one class
+     */
+    public IDexTreeVisitor wrap(String name, IDexTreeVisitor pass) {
+        return timed ? new MetricsVisitor(pass, register(name)) : pass;
+    }
+
+    public PassStats register(String name) {
+        PassStats stats = new PassStats(name);
+        passes.add(stats);
+        return stats;
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Value read when the summary is made, for counters kept by other classes (e.g. cache hits).
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public List<PassStats> getPasses() {
+        return passes;
+    }
+
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    public String summary() {
+        List<String> lines = new ArrayList<>();
+        for (PassStats stats : passes) {
+            lines.add(stats.toString());
+        }
+        getCounters().forEach((name, value) -> lines.add(name + ": " + value));
+        return String.join("\n", lines) + '\n';
+    }
+}
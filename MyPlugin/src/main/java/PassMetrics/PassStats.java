@@ -0,0 +1,109 @@
+package PassMetrics;
+
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent by one pass, summed over all classes and methods, with the slowest class and method.
+ * Class times don't include inner classes, they are counted on their own.
+ */
+public class PassStats {
+    private final String name;
+    private final LongAdder classes = new LongAdder();
+    private final LongAdder methods = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder methodWallNanos = new LongAdder();
+    private final LongAdder methodCpuNanos = new LongAdder();
+    // read without the lock to skip most updates, written under it
+    private volatile long slowestClassNanos;
+    private String slowestClass;
+    private volatile long slowestMethodNanos;
+    private String slowestMethod;
+
+    public PassStats(String name) {
+        this.name = name;
+    }
+
+    public void addClass(String cls, long wall, long cpu) {
+        classes.increment();
+        wallNanos.add(wall);
+        cpuNanos.add(cpu);
+        if (wall > slowestClassNanos) {
+            synchronized (this) {
+                if (wall > slowestClassNanos) {
+                    slowestClassNanos = wall;
+                    slowestClass = cls;
+                }
+            }
+        }
+    }
+
+    public void addMethod(MethodNode mth, long wall, long cpu) {
+        methods.increment();
+        methodWallNanos.add(wall);
+        methodCpuNanos.add(cpu);
+        if (wall > slowestMethodNanos) {
+            synchronized (this) {
+                if (wall > slowestMethodNanos) {
+                    slowestMethodNanos = wall;
+                    // name built only for a new slowest method
+                    slowestMethod = mth.getParentClass().getClassInfo().getRawName() + '.' + mth.getMethodInfo().getShortId();
+                }
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getClasses() {
+        return classes.sum();
+    }
+
+    public long getMethods() {
+        return methods.sum();
+    }
+
+    public long getWallNanos() {
+        return wallNanos.sum();
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    public long getMethodWallNanos() {
+        return methodWallNanos.sum();
+    }
+
+    public long getMethodCpuNanos() {
+        return methodCpuNanos.sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        // CPU time is left out if not measured
+        StringBuilder sb = new StringBuilder(name).append(':');
+        if (getClasses() != 0) {
+            sb.append(" classes ").append(getClasses()).append(", wall ").append(getWallNanos() / 1_000_000).append("ms");
+            if (getCpuNanos() != 0) {
+                sb.append(", cpu ").append(getCpuNanos() / 1_000_000).append("ms");
+            }
+            sb.append(',');
+        }
+        sb.append(" methods ").append(getMethods()).append(", method wall ").append(getMethodWallNanos() / 1_000_000).append("ms");
+        if (getMethodCpuNanos() != 0) {
+            sb.append(", method cpu ").append(getMethodCpuNanos() / 1_000_000).append("ms");
+        }
+        if (slowestClass != null) {
+            sb.append("\n    slowest class ").append(slowestClass).append(' ').append(slowestClassNanos / 1_000_000).append("ms");
+        }
+        if (slowestMethod != null) {
+            sb.append("\n    slowest method ").append(slowestMethod).append(' ').append(slowestMethodNanos / 1_000_000).append("ms");
+        }
+        return sb.toString();
+    }
+}
@@ -1,41 +1,195 @@
+import InsnScanner.InsnScanner;
+import InsnScanner.ScanHandler;
+import PassMetrics.PassMetrics;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.ConstStringNode;
 import jadx.core.dex.instructions.InsnType;
 import jadx.core.dex.instructions.InvokeNode;
 import jadx.core.dex.instructions.args.ArgType;
 import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.InsnWrapArg;
 import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.nodes.BlockNode;
 import jadx.core.dex.nodes.InsnNode;
 import jadx.core.dex.nodes.MethodNode;
 import jadx.core.dex.visitors.AbstractVisitor;
 import jadx.core.utils.BlockUtils;
-import jadx.core.utils.InsnUtils;
+import jadx.core.utils.InsnRemover;
 
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces {@code Color.rgb}, {@code Color.argb} and {@code Color.parseColor} calls with constant arguments by the color value.
+ * Calls are collected while the method is scanned and all of them are replaced in one walk over the method.
+ */
+public class RGBVisitor extends AbstractVisitor implements ScanHandler<Map<InsnNode, Integer>> {
+    private static final String COLOR_CLASS = "android.graphics.Color";
+    private static final String RGB = "rgb(III)I";
+    private static final String ARGB = "argb(IIII)I";
+    private static final String PARSE_COLOR = "parseColor(Ljava/lang/String;)I";
+
+    private LongAdder folded = new LongAdder();
+
+    public void setMetrics(PassMetrics metrics) {
+        folded = metrics.counter(PassMetrics.RGB_FOLDED);
+    }
 
-public class RGBVisitor extends AbstractVisitor{
     @Override
     public void visit(MethodNode mth) {
-        if (mth.isNoCode()) {
+        InsnScanner.scan(mth, this);
+    }
+
+    @Override
+    public Set<InsnType> getInsnTypes() {
+        return Set.of();
+    }
+
+    @Override
+    public Set<String> getCalleeNames() {
+        return Set.of("rgb", "argb", "parseColor");
+    }
+
+    @Override
+    public Set<String> getIndexedCallees() {
+        return Set.of(COLOR_CLASS + ".rgb", COLOR_CLASS + ".argb", COLOR_CLASS + ".parseColor");
+    }
+
+    @Override
+    public Map<InsnNode, Integer> start(MethodNode mth) {
+        return new IdentityHashMap<>(4);
+    }
+
+    @Override
+    public void handle(MethodNode mth, InsnNode insn, Map<InsnNode, Integer> colors) {
+        Integer color = getColor((InvokeNode) insn);
+        if (color != null) {
+            colors.put(insn, color);
+        }
+    }
+
+    @Override
+    public void finish(MethodNode mth, Map<InsnNode, Integer> colors) {
+        List<BlockNode> blocks = mth.getBasicBlocks();
+        if (colors.isEmpty() || blocks == null) {
             return;
         }
-        // search rgb function
-        InsnNode rgbNode = InsnUtils.searchInsn(mth, InsnType.INVOKE, (insn) -> {
-            InvokeNode invokeNode = (InvokeNode) insn;
-            return invokeNode.getCallMth().getName().equals("rgb") && invokeNode.getArgsCount() == 3 &&
-                    invokeNode.getArg(0).isLiteral() && invokeNode.getArg(1).isLiteral() && invokeNode.getArg(2).isLiteral();
-        });
-        // replace rgb function
-        if (rgbNode != null) {
-            long red = ((LiteralArg) rgbNode.getArg(0)).getLiteral();
-            long green = ((LiteralArg) rgbNode.getArg(1)).getLiteral();
-            long blue = ((LiteralArg) rgbNode.getArg(2)).getLiteral();
-            long color = (red << 16) + (green << 8) + blue;
-            List<InsnArg> args = new ArrayList<>();
-            args.add(InsnArg.lit(color, ArgType.INT));
-            InsnNode replaceNode = new InsnNode(InsnType.CONST, args);
-            replaceNode.setResult(rgbNode.getResult());
-            // replace invoke instruction
-            BlockUtils.replaceInsn(mth, rgbNode, replaceNode);
-        }
-    }
-}
\ No newline at end of file
+        for (BlockNode block : blocks) {
+            List<InsnNode> insns = block.getInstructions();
+            for (int i = 0; i < insns.size(); i++) {
+                InsnNode insn = insns.get(i);
+                replaceWrapped(mth, insn, colors);
+                Integer color = colors.get(insn);
+                // a call without result has nothing to replace
+                if (color != null && insn.getResult() != null) {
+                    InsnNode replaceNode = new InsnNode(InsnType.CONST, 1);
+                    replaceNode.addArg(InsnArg.lit(color, ArgType.INT));
+                    replaceNode.setResult(insn.getResult());
+                    BlockUtils.replaceInsn(mth, block, i, replaceNode);
+                    folded.increment();
+                }
+            }
+        }
+    }
+
+    // calls used as arguments of other instructions, inner calls first
+    private void replaceWrapped(MethodNode mth, InsnNode insn, Map<InsnNode, Integer> colors) {
+        for (int i = 0; i < insn.getArgsCount(); i++) {
+            InsnArg arg = insn.getArg(i);
+            if (arg.isInsnWrap()) {
+                InsnNode wrapped = ((InsnWrapArg) arg).getWrapInsn();
+                replaceWrapped(mth, wrapped, colors);
+                Integer color = colors.get(wrapped);
+                if (color != null) {
+                    insn.replaceArg(arg, InsnArg.lit(color, ArgType.INT));
+                    InsnRemover.unbindAllArgs(mth, wrapped);
+                    folded.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return color returned by the call, null if it is not a color call with constant arguments
+     */
+    private static Integer getColor(InvokeNode invokeNode) {
+        MethodInfo callMth = invokeNode.getCallMth();
+        if (!callMth.getDeclClass().getFullName().equals(COLOR_CLASS)) {
+            return null;
+        }
+        switch (callMth.getShortId()) {
+            case RGB -> {
+                Long red = getLiteral(invokeNode.getArg(0));
+                Long green = getLiteral(invokeNode.getArg(1));
+                Long blue = getLiteral(invokeNode.getArg(2));
+                if (red == null || green == null || blue == null) {
+                    return null;
+                }
+                // same as Color.rgb
+                return 0xFF000000 | (red.intValue() << 16) | (green.intValue() << 8) | blue.intValue();
+            }
+            case ARGB -> {
+                Long alpha = getLiteral(invokeNode.getArg(0));
+                Long red = getLiteral(invokeNode.getArg(1));
+                Long green = getLiteral(invokeNode.getArg(2));
+                Long blue = getLiteral(invokeNode.getArg(3));
+                if (alpha == null || red == null || green == null || blue == null) {
+                    return null;
+                }
+                return (alpha.intValue() << 24) | (red.intValue() << 16) | (green.intValue() << 8) | blue.intValue();
+            }
+            case PARSE_COLOR -> {
+                return parseColor(getString(invokeNode.getArg(0)));
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    // "#RRGGBB" or "#AARRGGBB", color names are left to the runtime
+    private static Integer parseColor(String s) {
+        if (s == null || (s.length() != 7 && s.length() != 9) || s.charAt(0) != '#') {
+            return null;
+        }
+        long color = 0;
+        for (int i = 1; i < s.length(); i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            color = color << 4 | digit;
+        }
+        if (s.length() == 7) {
+            color |= 0xFF000000L;
+        }
+        return (int) color;
+    }
+
+    // literal argument, also a constant inlined as wrapped instruction
+    private static Long getLiteral(InsnArg arg) {
+        if (arg.isLiteral()) {
+            return ((LiteralArg) arg).getLiteral();
+        }
+        if (arg.isInsnWrap()) {
+            InsnNode wrapped = ((InsnWrapArg) arg).getWrapInsn();
+            if (wrapped.getType() == InsnType.CONST && wrapped.getArgsCount() == 1 && wrapped.getArg(0).isLiteral()) {
+                return ((LiteralArg) wrapped.getArg(0)).getLiteral();
+            }
+        }
+        return null;
+    }
+
+    private static String getString(InsnArg arg) {
+        if (arg.isInsnWrap()) {
+            InsnNode wrapped = ((InsnWrapArg) arg).getWrapInsn();
+            if (wrapped.getType() == InsnType.CONST_STR) {
+                return ((ConstStringNode) wrapped).getString();
+            }
+        }
+        return null;
+    }
+}
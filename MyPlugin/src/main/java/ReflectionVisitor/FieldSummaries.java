@@ -0,0 +1,132 @@
+package ReflectionVisitor;
+
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.core.dex.info.AccessInfo;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reflection values of static fields, shared by all methods of the APK.
+ * The {@link MethodSummary} of each method of a class is built once, on the first load of one of its fields,
+ * and the resolved value is kept per field, so the initializer is not analyzed again for each call site.
+ * <p>
+ * Only fields nothing outside their class can write are used: final or private ones.
+ */
+public class FieldSummaries {
+    // fields loaded from fields loaded from fields...
+    private static final int MAX_DEPTH = 8;
+    private static final Object NONE = new Object();
+    // MAX_DEPTH was hit, the value may still be known
+    private static final Object TRUNCATED = new Object();
+
+    private final RootNode root;
+    // stores of all methods of the class
+    private final Map<ClassNode, Map<FieldInfo, Object>> classStores = new ConcurrentHashMap<>();
+    // String, resolved FieldValue or NONE, truncated results are not kept
+    private final Map<FieldInfo, Object> values = new ConcurrentHashMap<>();
+
+    public FieldSummaries(RootNode root) {
+        this.root = root;
+    }
+
+    /**
+     * @return value of the field with resolved class and method names, null if not known
+     */
+    public FieldValue getValue(FieldInfo field) {
+        Object value = resolve(field, 0);
+        return value instanceof FieldValue ? (FieldValue) value : null;
+    }
+
+    private Object resolve(FieldInfo field, int depth) {
+        Object value = values.get(field);
+        if (value == null) {
+            if (depth == MAX_DEPTH) {
+                return TRUNCATED;
+            }
+            value = resolveValue(getStored(field), depth + 1);
+            if (value == TRUNCATED) {
+                // not kept, a shallower load may still resolve it
+                return TRUNCATED;
+            }
+            values.putIfAbsent(field, value != null ? value : NONE);
+        }
+        return value == NONE ? null : value;
+    }
+
+    private Object resolveValue(Object value, int depth) {
+        if (value instanceof FieldInfo) {
+            return resolve((FieldInfo) value, depth);
+        }
+        if (value instanceof FieldValue) {
+            FieldValue fieldValue = (FieldValue) value;
+            Object owner = resolveValue(fieldValue.getOwner(), depth);
+            if (owner == TRUNCATED) {
+                return TRUNCATED;
+            }
+            String className = getClassName(owner);
+            Object name = fieldValue.getName();
+            if (name != null) {
+                name = resolveValue(name, depth);
+                if (name == TRUNCATED) {
+                    return TRUNCATED;
+                }
+                if (!(name instanceof String)) {
+                    return null;
+                }
+            }
+            return className != null
+                    ? new FieldValue(fieldValue.getType(), className, name, fieldValue.getParamTypes()) : null;
+        }
+        return value instanceof String ? value : null;
+    }
+
+    // class name or class object
+    private static String getClassName(Object value) {
+        if (value instanceof FieldValue && ((FieldValue) value).getType() == ReflectionType.FORNAME) {
+            return ((FieldValue) value).getClassName();
+        }
+        return value instanceof String ? (String) value : null;
+    }
+
+    // stored value, null if not known
+    private Object getStored(FieldInfo fieldInfo) {
+        FieldNode field = root.resolveField(fieldInfo);
+        if (field == null) {
+            return null;
+        }
+        AccessInfo flags = field.getAccessFlags();
+        if (!flags.isStatic() || !flags.isFinal() && !flags.isPrivate()) {
+            return null;
+        }
+        EncodedValue constant = field.get(JadxAttrType.CONSTANT_VALUE);
+        if (constant != null) {
+            return constant.getValue();
+        }
+        Object value = classStores.computeIfAbsent(field.getParentClass(), FieldSummaries::buildStores).get(field.getFieldInfo());
+        return value != MethodSummary.UNKNOWN ? value : null;
+    }
+
+    private static Map<FieldInfo, Object> buildStores(ClassNode cls) {
+        Map<FieldInfo, Object> stores = new HashMap<>();
+        for (MethodNode mth : cls.getMethods()) {
+            MethodSummary.build(mth).getStores().forEach((field, value) ->
+                    stores.merge(field, value, (a, b) -> a.equals(b) ? a : MethodSummary.UNKNOWN));
+        }
+        return stores;
+    }
+
+    /**
+     * @return classes summarized so far
+     */
+    public int size() {
+        return classStores.size();
+    }
+}
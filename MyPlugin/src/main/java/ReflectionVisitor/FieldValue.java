@@ -0,0 +1,83 @@
+package ReflectionVisitor;
+
+import jadx.core.dex.instructions.args.ArgType;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Class, method or constructor object got by reflection and kept in a static field.
+ * In a {@link MethodSummary} the class and the method name may still be the {@code FieldInfo} they were loaded from,
+ * {@link FieldSummaries} resolves them to names.
+ */
+public final class FieldValue {
+    // FORNAME, GETMETHOD or CONSTRUCTOR
+    private final ReflectionType type;
+    // class name or the field it was loaded from
+    private final Object owner;
+    // method name or the field it was loaded from, null for classes and constructors
+    private final Object name;
+    // Class[] given to getMethod or getConstructor, null if not known
+    private final List<ArgType> paramTypes;
+
+    public FieldValue(ReflectionType type, Object owner, Object name) {
+        this(type, owner, name, null);
+    }
+
+    public FieldValue(ReflectionType type, Object owner, Object name, List<ArgType> paramTypes) {
+        this.type = type;
+        this.owner = owner;
+        this.name = name;
+        this.paramTypes = paramTypes;
+    }
+
+    public ReflectionType getType() {
+        return type;
+    }
+
+    public Object getOwner() {
+        return owner;
+    }
+
+    public Object getName() {
+        return name;
+    }
+
+    public List<ArgType> getParamTypes() {
+        return paramTypes;
+    }
+
+    /**
+     * @return name of the class, for resolved values
+     */
+    public String getClassName() {
+        return (String) owner;
+    }
+
+    /**
+     * @return name of the method, for resolved GETMETHOD values
+     */
+    public String getMethodName() {
+        return (String) name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FieldValue)) {
+            return false;
+        }
+        FieldValue other = (FieldValue) o;
+        return type == other.type && owner.equals(other.owner) && Objects.equals(name, other.name)
+                && Objects.equals(paramTypes, other.paramTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, owner, name, paramTypes);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + owner + (name != null ? "." + name : "") + (paramTypes != null ? paramTypes : "");
+    }
+}
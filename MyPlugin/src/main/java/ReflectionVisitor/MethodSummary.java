@@ -0,0 +1,276 @@
+package ReflectionVisitor;
+
+import jadx.api.plugins.input.data.ICatch;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.ITry;
+import jadx.core.dex.attributes.AType;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.instructions.ConstClassNode;
+import jadx.core.dex.instructions.ConstStringNode;
+import jadx.core.dex.instructions.GotoNode;
+import jadx.core.dex.instructions.IfNode;
+import jadx.core.dex.instructions.IndexInsnNode;
+import jadx.core.dex.instructions.InsnDecoder;
+import jadx.core.dex.instructions.InvokeNode;
+import jadx.core.dex.instructions.NewArrayNode;
+import jadx.core.dex.instructions.SwitchData;
+import jadx.core.dex.instructions.SwitchInsn;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.instructions.args.RegisterArg;
+import jadx.core.dex.nodes.InsnNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reflection values a method stores to static fields, like {@code M = Class.forName("a.b").getMethod("c")}
+ * in {@code <clinit>}. Values loaded from fields are kept as their {@code FieldInfo}.
+ * <p>
+ * Built from the instructions decoded again from the input, so it doesn't depend on which methods jadx already processed.
+ * Registers are only followed through straight code, they are forgotten at each jump target.
+ */
+public final class MethodSummary {
+    // field stored with different or unknown values
+    public static final Object UNKNOWN = new Object();
+    private static final MethodSummary EMPTY = new MethodSummary(Map.of());
+
+    // field -> String, FieldInfo, FieldValue or UNKNOWN
+    private final Map<FieldInfo, Object> stores;
+
+    private MethodSummary(Map<FieldInfo, Object> stores) {
+        this.stores = stores;
+    }
+
+    public Map<FieldInfo, Object> getStores() {
+        return stores;
+    }
+
+    public static MethodSummary build(MethodNode mth) {
+        ICodeReader codeReader = mth.getCodeReader();
+        if (codeReader == null) {
+            return EMPTY;
+        }
+        InsnNode[] insns;
+        ICodeReader reader = codeReader.copy();
+        try {
+            // private copy, the method may be processed by another thread
+            insns = new InsnDecoder(mth).process(reader);
+        } catch (Exception e) {
+            return EMPTY;
+        }
+        BitSet jumpTargets = getJumpTargets(insns, reader);
+        Map<FieldInfo, Object> stores = new HashMap<>();
+        // String, FieldInfo, FieldValue, class type, literal or ClassArray held by each register
+        Object[] regs = new Object[reader.getRegistersCount()];
+        Object result = null;
+        for (int offset = 0; offset < insns.length; offset++) {
+            InsnNode insn = insns[offset];
+            if (insn == null) {
+                continue;
+            }
+            if (insn.contains(AType.JADX_ERROR)) {
+                // stores after an instruction which failed to decode are not known
+                return EMPTY;
+            }
+            if (jumpTargets.get(offset)) {
+                Arrays.fill(regs, null);
+            }
+            switch (insn.getType()) {
+                case CONST_STR -> set(regs, insn, ((ConstStringNode) insn).getString());
+                case CONST -> set(regs, insn, ((LiteralArg) insn.getArg(0)).getLiteral());
+                case CONST_CLASS -> set(regs, insn, getConstClass(((ConstClassNode) insn).getClsType()));
+                case MOVE -> set(regs, insn, get(regs, insn.getArg(0)));
+                case MOVE_RESULT -> set(regs, insn, result);
+                case SGET -> set(regs, insn, ((IndexInsnNode) insn).getIndex());
+                case NEW_ARRAY -> set(regs, insn, newArray((NewArrayNode) insn, regs));
+                case APUT -> arrayPut(insn, regs);
+                case SPUT -> store(stores, (FieldInfo) ((IndexInsnNode) insn).getIndex(), get(regs, insn.getArg(0)));
+                case INVOKE -> result = invoke((InvokeNode) insn, regs);
+                case GOTO, RETURN, THROW -> Arrays.fill(regs, null);
+                default -> set(regs, insn, null);
+            }
+        }
+        return stores.isEmpty() ? EMPTY : new MethodSummary(stores);
+    }
+
+    // value returned by a reflection call, null for other calls
+    private static Object invoke(InvokeNode insn, Object[] regs) {
+        switch (insn.getCallMth().getFullName()) {
+            case "java.lang.Class.forName" -> {
+                Object className = get(regs, insn.getArg(0));
+                if (className instanceof String || className instanceof FieldInfo) {
+                    return new FieldValue(ReflectionType.FORNAME, className, null);
+                }
+            }
+            case "java.lang.Class.getMethod", "java.lang.Class.getDeclaredMethod" -> {
+                Object owner = getClass(get(regs, insn.getArg(0)));
+                Object name = get(regs, insn.getArg(1));
+                if (owner != null && (name instanceof String || name instanceof FieldInfo)) {
+                    return new FieldValue(ReflectionType.GETMETHOD, owner, name, getParamTypes(get(regs, insn.getArg(2))));
+                }
+            }
+            case "java.lang.Class.getConstructor", "java.lang.Class.getDeclaredConstructor" -> {
+                Object owner = getClass(get(regs, insn.getArg(0)));
+                if (owner != null) {
+                    return new FieldValue(ReflectionType.CONSTRUCTOR, owner, null, getParamTypes(get(regs, insn.getArg(1))));
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    // String.class is kept as the class object forName would return, int.class and String[].class as their type
+    private static Object getConstClass(ArgType type) {
+        return type.isObject() ? new FieldValue(ReflectionType.FORNAME, type.getObject(), null) : type;
+    }
+
+    // Class[] array with constant length
+    private static Object newArray(NewArrayNode insn, Object[] regs) {
+        Object size = get(regs, insn.getArg(0));
+        if (!insn.getArrayType().equals(ArgType.array(ArgType.CLASS)) || !(size instanceof Long)) {
+            return null;
+        }
+        long length = (Long) size;
+        return length >= 0 && length <= 255 ? new ClassArray((int) length) : null;
+    }
+
+    // store of a class object into a Class[] array: a[0] = String.class or a[1] = Integer.TYPE
+    private static void arrayPut(InsnNode insn, Object[] regs) {
+        Object array = get(regs, insn.getArg(0));
+        if (!(array instanceof ClassArray)) {
+            return;
+        }
+        ClassArray classArray = (ClassArray) array;
+        Object index = get(regs, insn.getArg(1));
+        ArgType type = getClassType(get(regs, insn.getArg(2)));
+        if (!(index instanceof Long) || !classArray.set((Long) index, type)) {
+            classArray.unknown = true;
+        }
+    }
+
+    // type of a class object, null if not known
+    private static ArgType getClassType(Object value) {
+        if (value instanceof ArgType) {
+            return (ArgType) value;
+        }
+        if (value instanceof FieldValue && ((FieldValue) value).getType() == ReflectionType.FORNAME
+                && ((FieldValue) value).getOwner() instanceof String) {
+            return ArgType.object(((FieldValue) value).getClassName());
+        }
+        return value instanceof FieldInfo ? ParamTypes.getPrimitiveType((FieldInfo) value) : null;
+    }
+
+    // parameter types of a Class[] argument, null if not known
+    private static List<ArgType> getParamTypes(Object value) {
+        if (value instanceof ClassArray) {
+            return ((ClassArray) value).getTypes();
+        }
+        // null array
+        return value instanceof Long && (Long) value == 0 ? List.of() : null;
+    }
+
+    // owner of a member got from the class object, null if not known
+    private static Object getClass(Object value) {
+        if (value instanceof FieldValue && ((FieldValue) value).getType() == ReflectionType.FORNAME) {
+            return ((FieldValue) value).getOwner();
+        }
+        // class object loaded from a field
+        return value instanceof FieldInfo ? value : null;
+    }
+
+    private static void store(Map<FieldInfo, Object> stores, FieldInfo field, Object value) {
+        Object prev = stores.get(field);
+        if (value == null || prev != null && !prev.equals(value)) {
+            value = UNKNOWN;
+        }
+        stores.put(field, value);
+    }
+
+    // targets of jumps and exception handlers, where values of several paths meet
+    private static BitSet getJumpTargets(InsnNode[] insns, ICodeReader reader) {
+        BitSet targets = new BitSet(insns.length);
+        for (int offset = 0; offset < insns.length; offset++) {
+            InsnNode insn = insns[offset];
+            if (insn instanceof IfNode) {
+                targets.set(((IfNode) insn).getTarget());
+            } else if (insn instanceof GotoNode) {
+                targets.set(((GotoNode) insn).getTarget());
+            } else if (insn instanceof SwitchInsn) {
+                int dataTarget = ((SwitchInsn) insn).getDataTarget();
+                if (dataTarget < insns.length && insns[dataTarget] instanceof SwitchData) {
+                    // relative to the switch
+                    for (int target : ((SwitchData) insns[dataTarget]).getTargets()) {
+                        targets.set(offset + target);
+                    }
+                }
+            }
+        }
+        for (ITry tryData : reader.getTries()) {
+            ICatch catchData = tryData.getCatch();
+            for (int handler : catchData.getHandlers()) {
+                targets.set(handler);
+            }
+            if (catchData.getCatchAllHandler() >= 0) {
+                targets.set(catchData.getCatchAllHandler());
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Class[] array filled by constant stores, changed in place so copies in other registers see the stores too.
+     */
+    private static final class ClassArray {
+        private final ArgType[] types;
+        // stored with a value or index which is not known
+        private boolean unknown;
+
+        ClassArray(int length) {
+            this.types = new ArgType[length];
+        }
+
+        boolean set(long index, ArgType type) {
+            if (type == null || index < 0 || index >= types.length) {
+                return false;
+            }
+            types[(int) index] = type;
+            return true;
+        }
+
+        List<ArgType> getTypes() {
+            if (unknown) {
+                return null;
+            }
+            for (ArgType type : types) {
+                if (type == null) {
+                    return null;
+                }
+            }
+            return List.of(types);
+        }
+    }
+
+    private static Object get(Object[] regs, InsnArg arg) {
+        return arg instanceof RegisterArg ? regs[((RegisterArg) arg).getRegNum()] : null;
+    }
+
+    private static void set(Object[] regs, InsnNode insn, Object value) {
+        RegisterArg res = insn.getResult();
+        if (res != null) {
+            regs[res.getRegNum()] = value;
+            // long and double values use the next register too
+            ArgType type = res.getInitType();
+            if (type.equals(ArgType.WIDE) || type.equals(ArgType.LONG) || type.equals(ArgType.DOUBLE)) {
+                regs[res.getRegNum() + 1] = null;
+            }
+        }
+    }
+}
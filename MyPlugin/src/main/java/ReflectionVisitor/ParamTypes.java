@@ -0,0 +1,131 @@
+package ReflectionVisitor;
+
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.instructions.ConstClassNode;
+import jadx.core.dex.instructions.FilledNewArrayNode;
+import jadx.core.dex.instructions.IndexInsnNode;
+import jadx.core.dex.instructions.InsnType;
+import jadx.core.dex.instructions.NewArrayNode;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.InsnWrapArg;
+import jadx.core.dex.instructions.args.LiteralArg;
+import jadx.core.dex.instructions.args.RegisterArg;
+import jadx.core.dex.nodes.InsnNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameter types passed to {@code getMethod} and {@code getConstructor} as a {@code Class[]},
+ * like {@code new Class[] {String.class, Integer.TYPE}}.
+ */
+final class ParamTypes {
+    private ParamTypes() {
+    }
+
+    /**
+     * @return types of the array elements, null if they are not known
+     */
+    static List<ArgType> parse(InsnArg arg) {
+        if (arg.isLiteral()) {
+            // null array, no parameters
+            return ((LiteralArg) arg).getLiteral() == 0 ? List.of() : null;
+        }
+        InsnNode insn = getSource(arg);
+        if (insn instanceof FilledNewArrayNode) {
+            List<ArgType> types = new ArrayList<>(insn.getArgsCount());
+            for (InsnArg element : insn.getArguments()) {
+                ArgType type = getClassType(element);
+                if (type == null) {
+                    return null;
+                }
+                types.add(type);
+            }
+            return types;
+        }
+        if (insn instanceof NewArrayNode && insn.getArg(0).isLiteral()) {
+            long size = ((LiteralArg) insn.getArg(0)).getLiteral();
+            if (size == 0) {
+                return List.of();
+            }
+            if (arg.isRegister() && size <= 255) {
+                return parseStores((RegisterArg) arg, (int) size);
+            }
+        }
+        return null;
+    }
+
+    // elements put one by one before the call: a = new Class[2]; a[0] = String.class; a[1] = Integer.TYPE
+    private static List<ArgType> parseStores(RegisterArg array, int size) {
+        ArgType[] types = new ArgType[size];
+        for (RegisterArg use : array.getSVar().getUseList()) {
+            InsnNode insn = use.getParentInsn();
+            if (insn == null) {
+                return null;
+            }
+            if (insn.getType() != InsnType.APUT) {
+                // the reflection call
+                continue;
+            }
+            if (insn.getArg(0) != use || !insn.getArg(1).isLiteral()) {
+                return null;
+            }
+            long index = ((LiteralArg) insn.getArg(1)).getLiteral();
+            ArgType type = getClassType(insn.getArg(2));
+            if (index < 0 || index >= size || type == null || types[(int) index] != null) {
+                return null;
+            }
+            types[(int) index] = type;
+        }
+        for (ArgType type : types) {
+            if (type == null) {
+                return null;
+            }
+        }
+        return List.of(types);
+    }
+
+    // class of a Class object: String.class or Integer.TYPE, null if not known
+    private static ArgType getClassType(InsnArg arg) {
+        InsnNode insn = getSource(arg);
+        if (insn instanceof ConstClassNode) {
+            return ((ConstClassNode) insn).getClsType();
+        }
+        if (insn != null && insn.getType() == InsnType.SGET) {
+            return getPrimitiveType((FieldInfo) ((IndexInsnNode) insn).getIndex());
+        }
+        return null;
+    }
+
+    /**
+     * @return primitive type of a {@code TYPE} field of a box class, like {@code Integer.TYPE}, null for other fields
+     */
+    static ArgType getPrimitiveType(FieldInfo field) {
+        if (!field.getName().equals("TYPE")) {
+            return null;
+        }
+        return switch (field.getDeclClass().getFullName()) {
+            case "java.lang.Boolean" -> ArgType.BOOLEAN;
+            case "java.lang.Byte" -> ArgType.BYTE;
+            case "java.lang.Character" -> ArgType.CHAR;
+            case "java.lang.Short" -> ArgType.SHORT;
+            case "java.lang.Integer" -> ArgType.INT;
+            case "java.lang.Long" -> ArgType.LONG;
+            case "java.lang.Float" -> ArgType.FLOAT;
+            case "java.lang.Double" -> ArgType.DOUBLE;
+            default -> null;
+        };
+    }
+
+    // instruction making the value of the argument
+    private static InsnNode getSource(InsnArg arg) {
+        if (arg.isInsnWrap()) {
+            return ((InsnWrapArg) arg).getWrapInsn();
+        }
+        if (arg.isRegister()) {
+            return ((RegisterArg) arg).getAssignInsn();
+        }
+        return null;
+    }
+}
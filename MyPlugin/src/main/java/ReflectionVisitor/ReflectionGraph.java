@@ -1,145 +1,226 @@
 package ReflectionVisitor;
 
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.instructions.args.InsnArg;
+import jadx.core.dex.instructions.args.InsnWrapArg;
 import jadx.core.dex.instructions.args.RegisterArg;
 import jadx.core.dex.instructions.args.SSAVar;
+import jadx.core.dex.nodes.InsnNode;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.BiConsumer;
+import java.util.Map;
 
+/**
+ * Reflection call chains of one method.
+ * Nodes are plain int ids into parallel arrays, successors are kept as an intrusive
+ * first child / next sibling list and the producer of a value is found by its SSA variable.
+ */
 public class ReflectionGraph {
-    private CopyOnWriteArrayList<ReflectionRoot> roots;
-    private CopyOnWriteArrayList<ReflectionNode> nodes;
+    public static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int size;
+    private ReflectionType[] types;
+    private InsnNode[] insns;
+    private Object[] args;
+    private RegisterArg[] results;
+    private ReflectionTarget[] targets;
+    // for values loaded from static fields: the field, the method name and parameter types got by its initializer
+    private FieldInfo[] fields;
+    private String[] names;
+    private Object[] paramTypes;
+    private int[] firstSuccessor;
+    private int[] lastSuccessor;
+    private int[] nextSibling;
+
+    private int[] roots;
+    private int rootCount;
+    // Method.invoke and Constructor.newInstance calls, the ones which are rewritten
+    private int callCount;
+
+    // SSA variable -> id of the node which produced it
+    private final Map<SSAVar, Integer> producers;
+    // wrapped instruction (without result) -> id of its node
+    private final Map<InsnNode, Integer> wrapped;
 
     public ReflectionGraph() {
-        roots = new CopyOnWriteArrayList<>();
-        nodes = new CopyOnWriteArrayList<>();
+        types = new ReflectionType[INITIAL_CAPACITY];
+        insns = new InsnNode[INITIAL_CAPACITY];
+        args = new Object[INITIAL_CAPACITY];
+        results = new RegisterArg[INITIAL_CAPACITY];
+        targets = new ReflectionTarget[INITIAL_CAPACITY];
+        fields = new FieldInfo[INITIAL_CAPACITY];
+        names = new String[INITIAL_CAPACITY];
+        paramTypes = new Object[INITIAL_CAPACITY];
+        firstSuccessor = new int[INITIAL_CAPACITY];
+        lastSuccessor = new int[INITIAL_CAPACITY];
+        nextSibling = new int[INITIAL_CAPACITY];
+        roots = new int[INITIAL_CAPACITY];
+        producers = new HashMap<>();
+        wrapped = new IdentityHashMap<>();
     }
 
-    public boolean addNode(ReflectionNode node) {
-        BiConsumer<ReflectionNode, ReflectionNode> consumer = ReflectionNode::addSuccessor;
-        if (node.getType().equals(ReflectionType.FORNAME)) {
-            // add root
-            roots.add((ReflectionRoot) node);
-            return true;
+    /**
+     * Add a FORNAME node, which starts a new chain.
+     * The instruction is null for the class of a member loaded from a field.
+     */
+    public int addRoot(InsnNode insn, List<InsnArg> as, RegisterArg res, ReflectionTarget target) {
+        int id = add(ReflectionType.FORNAME, insn, as, res);
+        targets[id] = target;
+        if (rootCount == roots.length) {
+            roots = Arrays.copyOf(roots, rootCount * 2);
         }
-        for (ReflectionNode root : roots) {
-            if (searchParent(root, node, consumer)) {
-                nodes.add(node);
-                return true;
-            }
-        }
-        return false;
+        roots[rootCount++] = id;
+        return id;
     }
 
-    public boolean removeNode(ReflectionNode node) {
-        if (!nodes.remove(node)) {
-            return false;
+    /**
+     * Attach a node to the chain of its parent.
+     *
+     * @return id of the new node or {@link #NONE} if parent is unknown
+     */
+    public int addNode(ReflectionType type, InsnNode insn, List<InsnArg> as, RegisterArg res, int parent) {
+        if (parent == NONE) {
+            return NONE;
         }
-        BiConsumer<ReflectionNode, ReflectionNode> consumer = ReflectionNode::removeSuccessor;
-        for (ReflectionNode root : roots) {
-            if (searchParent(root, node, consumer)) {
-                return true;
-            }
+        int id = add(type, insn, as, res);
+        if (firstSuccessor[parent] == NONE) {
+            firstSuccessor[parent] = id;
+        } else {
+            nextSibling[lastSuccessor[parent]] = id;
         }
-        return false;
+        lastSuccessor[parent] = id;
+        if (type == ReflectionType.INVOKE || type == ReflectionType.NEWINSTANCE) {
+            callCount++;
+        }
+        return id;
     }
 
-    public boolean removeRoot(ReflectionRoot root) {
-        if (!nodes.remove(root)) {
-            return false;
-        }
-        for (ReflectionRoot r : roots) {
-            if (r.equals(root)) {
-                roots.remove(root);
-                return true;
-            }
+    /**
+     * Search node which produced the value of the argument.
+     */
+    public int getProducer(InsnArg arg) {
+        Integer id = null;
+        if (arg instanceof RegisterArg) {
+            id = producers.get(((RegisterArg) arg).getSVar());
+        } else if (arg instanceof InsnWrapArg) {
+            id = wrapped.get(((InsnWrapArg) arg).getWrapInsn());
         }
-        return false;
+        return id != null ? id : NONE;
     }
 
-    public boolean searchParent(ReflectionNode root, ReflectionNode node, BiConsumer<ReflectionNode, ReflectionNode> consumer) {
-        if (isParent(root, node)) {
-            consumer.accept(root, node);
-            return true;
-        } else {
-            for (ReflectionNode successor : root.getSuccessors()) {
-                if (searchParent(successor, node, consumer)) {
-                    return true;
-                }
-            }
+    private int add(ReflectionType type, InsnNode insn, List<InsnArg> as, RegisterArg res) {
+        if (size == types.length) {
+            grow();
+        }
+        int id = size++;
+        types[id] = type;
+        insns[id] = insn;
+        args[id] = as;
+        results[id] = res;
+        firstSuccessor[id] = NONE;
+        lastSuccessor[id] = NONE;
+        nextSibling[id] = NONE;
+        if (res != null) {
+            producers.put(res.getSVar(), id);
+        } else if (insn != null) {
+            wrapped.put(insn, id);
         }
-        return false;
+        return id;
     }
 
-    public boolean depthSearch(ReflectionNode root, ReflectionNode node, BiConsumer<ReflectionNode, ReflectionNode> consumer) {
-        if (root.equals(node)) {
-            consumer.accept(root, node);
-            return true;
-        } else {
-            for (ReflectionNode successor : root.getSuccessors()) {
-                if (depthSearch(successor, node, consumer)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        insns = Arrays.copyOf(insns, capacity);
+        args = Arrays.copyOf(args, capacity);
+        results = Arrays.copyOf(results, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        fields = Arrays.copyOf(fields, capacity);
+        names = Arrays.copyOf(names, capacity);
+        paramTypes = Arrays.copyOf(paramTypes, capacity);
+        firstSuccessor = Arrays.copyOf(firstSuccessor, capacity);
+        lastSuccessor = Arrays.copyOf(lastSuccessor, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
     }
 
-    public boolean isParent(ReflectionNode parent, ReflectionNode child) {
-        try {
-            SSAVar p_res = parent.getResult().getSVar();
-            SSAVar c_arg0 = ((RegisterArg) child.getArgs().get(0)).getSVar();
-            return p_res.equals(c_arg0);
-        } catch (Exception e) {
-            return false;
-        }
+    public ReflectionType getType(int id) {
+        return types[id];
     }
 
-    public void addList(ArrayList<ReflectionNode> list) {
-        if (list.get(0) instanceof ReflectionRoot) {
-            roots.add(((ReflectionRoot) list.get(0)));
-            for (int j = 0; j < list.size() - 1; ++j) {
-                ReflectionNode r = list.get(j);
-                ReflectionNode s = list.get(j + 1);
-                r.addSuccessor(s);
-                nodes.add(s);
-            }
-        } else {
-            if (addNode(list.get(0))) {
-                for (int j = 0; j < list.size() - 1; ++j) {
-                    ReflectionNode r = list.get(j);
-                    ReflectionNode s = list.get(j + 1);
-                    r.addSuccessor(s);
-                    nodes.add(s);
-                }
-            }
-        }
+    public InsnNode getInsnNode(int id) {
+        return insns[id];
     }
 
-    public CopyOnWriteArrayList<ReflectionNode> getNodes() {
-        return nodes;
+    @SuppressWarnings("unchecked")
+    public List<InsnArg> getArgs(int id) {
+        return (List<InsnArg>) args[id];
     }
 
-    public CopyOnWriteArrayList<ReflectionRoot> getRoots() {
-        return roots;
+    public RegisterArg getResult(int id) {
+        return results[id];
     }
 
-    public boolean shouldOptimize() {
-        if (roots.size() == 0) {
-            return false;
-        }
-        for (ReflectionNode node : nodes) {
-            if (node.getType().equals(ReflectionType.INVOKE)) {
-                return true;
-            }
-        }
-        return false;
+    public ReflectionTarget getTarget(int id) {
+        return targets[id];
+    }
+
+    /**
+     * Mark the node as a value loaded from the field instead of a reflection call of this method.
+     *
+     * @param name  method name of a GETMETHOD node
+     * @param types parameter types of a GETMETHOD or CONSTRUCTOR node, null if not known
+     */
+    public void setLoaded(int id, FieldInfo field, String name, List<ArgType> types) {
+        fields[id] = field;
+        names[id] = name;
+        paramTypes[id] = types;
+    }
+
+    /**
+     * @return field the value was loaded from, null for reflection calls
+     */
+    public FieldInfo getLoadedFrom(int id) {
+        return fields[id];
+    }
+
+    public String getLoadedName(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return parameter types of a loaded method or constructor, null if not known
+     */
+    @SuppressWarnings("unchecked")
+    public List<ArgType> getLoadedParamTypes(int id) {
+        return (List<ArgType>) paramTypes[id];
+    }
+
+    public int getFirstSuccessor(int id) {
+        return firstSuccessor[id];
     }
 
-    public void clear() {
-        roots.clear();
-        nodes.clear();
+    public int getNextSibling(int id) {
+        return nextSibling[id];
+    }
+
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    public int getRoot(int i) {
+        return roots[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean shouldOptimize() {
+        return rootCount != 0 && callCount != 0;
     }
-}
\ No newline at end of file
+}
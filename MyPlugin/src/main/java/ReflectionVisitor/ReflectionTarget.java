@@ -0,0 +1,125 @@
+package ReflectionVisitor;
+
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class loaded by reflection together with an index of its members, built once.
+ * A member is found by its name and parameter types, like {@code getMethod} does;
+ * a call with unknown parameter types is only resolved if one member has the same number of arguments.
+ */
+public class ReflectionTarget {
+    public static final ReflectionTarget UNRESOLVED = new ReflectionTarget(null);
+    private static final String CONSTRUCTOR = "<init>";
+
+    private final ClassNode classNode;
+    // method name -> methods with that name
+    private final Map<String, List<MethodNode>> methodsByName;
+    // name and parameter types -> member, null for several ones (bridges differing in the return type)
+    private final Map<Signature, MethodNode> methodsBySignature;
+    private final List<MethodNode> constructors;
+
+    public ReflectionTarget(ClassNode classNode) {
+        this.classNode = classNode;
+        this.methodsByName = new HashMap<>();
+        this.methodsBySignature = new HashMap<>();
+        this.constructors = new ArrayList<>();
+        if (classNode != null) {
+            for (MethodNode methodNode : classNode.getMethods()) {
+                MethodInfo methodInfo = methodNode.getMethodInfo();
+                if (methodNode.isConstructor()) {
+                    constructors.add(methodNode);
+                } else {
+                    methodsByName.computeIfAbsent(methodInfo.getName(), k -> new ArrayList<>()).add(methodNode);
+                }
+                Signature signature = new Signature(methodInfo.getName(), methodInfo.getArgumentsTypes());
+                methodsBySignature.put(signature, methodsBySignature.containsKey(signature) ? null : methodNode);
+            }
+        }
+    }
+
+    public ClassNode getClassNode() {
+        return classNode;
+    }
+
+    public List<MethodNode> getMethods(String name) {
+        return methodsByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * Method called through {@code Method.invoke}.
+     *
+     * @param paramTypes parameter types given to {@code getMethod}, null if not known
+     * @return the method, null if not found or ambiguous
+     */
+    public MethodInfo resolveMethod(String name, List<ArgType> paramTypes, int argsCount) {
+        if (paramTypes != null) {
+            return getBySignature(name, paramTypes);
+        }
+        return getByArgsCount(getMethods(name), argsCount);
+    }
+
+    /**
+     * Constructor called through {@code Constructor.newInstance}.
+     *
+     * @param paramTypes parameter types given to {@code getConstructor}, null if not known
+     * @return the constructor, null if not found or ambiguous
+     */
+    public MethodInfo resolveConstructor(List<ArgType> paramTypes, int argsCount) {
+        if (paramTypes != null) {
+            return getBySignature(CONSTRUCTOR, paramTypes);
+        }
+        return getByArgsCount(constructors, argsCount);
+    }
+
+    private MethodInfo getBySignature(String name, List<ArgType> paramTypes) {
+        MethodNode methodNode = methodsBySignature.get(new Signature(name, paramTypes));
+        return methodNode != null ? methodNode.getMethodInfo() : null;
+    }
+
+    // the only overload with this number of arguments
+    private static MethodInfo getByArgsCount(List<MethodNode> methods, int argsCount) {
+        MethodInfo found = null;
+        for (MethodNode methodNode : methods) {
+            if (methodNode.getMethodInfo().getArgsCount() == argsCount) {
+                if (found != null) {
+                    return null;
+                }
+                found = methodNode.getMethodInfo();
+            }
+        }
+        return found;
+    }
+
+    private static final class Signature {
+        private final String name;
+        private final List<ArgType> paramTypes;
+
+        Signature(String name, List<ArgType> paramTypes) {
+            this.name = name;
+            this.paramTypes = paramTypes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return name.equals(other.name) && paramTypes.equals(other.paramTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() * 31 + paramTypes.hashCode();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ReflectionVisitor;
+
+import jadx.api.JadxDecompiler;
+import jadx.core.dex.nodes.ClassNode;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class names used in {@code Class.forName} resolved to {@link ReflectionTarget}, shared by all methods of the APK.
+ */
+public class ReflectionTargetCache {
+    private final JadxDecompiler jadx;
+    private final ConcurrentHashMap<String, ReflectionTarget> targets;
+
+    public ReflectionTargetCache(JadxDecompiler jadx) {
+        this.jadx = jadx;
+        this.targets = new ConcurrentHashMap<>();
+    }
+
+    public ReflectionTarget resolve(String className) {
+        return targets.computeIfAbsent(className, name -> {
+            ClassNode classNode = jadx == null ? null : jadx.searchClassNodeByOrigFullName(name);
+            return classNode == null ? ReflectionTarget.UNRESOLVED : new ReflectionTarget(classNode);
+        });
+    }
+
+    public int size() {
+        return targets.size();
+    }
+}
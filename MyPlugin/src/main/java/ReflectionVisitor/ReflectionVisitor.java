@@ -1,6 +1,10 @@
 package ReflectionVisitor;
 // jadx.core
+import InsnScanner.InsnScanner;
+import InsnScanner.ScanHandler;
+import PassMetrics.PassMetrics;
 import jadx.api.JadxDecompiler;
+import jadx.core.dex.info.FieldInfo;
 import jadx.core.dex.info.MethodInfo;
 import jadx.core.dex.instructions.*;
 import jadx.core.dex.instructions.args.*;
@@ -12,231 +16,313 @@ import jadx.core.utils.InsnRemover;
 
 // java
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
-public class ReflectionVisitor extends AbstractVisitor {
-    private JadxDecompiler jadx;
-    private ReflectionGraph graph;
+public class ReflectionVisitor extends AbstractVisitor implements ScanHandler<ReflectionGraph> {
+    // types of static fields which may keep reflection objects
+    private static final Set<String> REFLECTION_FIELD_TYPES = Set.of(
+            "java.lang.Class", "java.lang.reflect.Method", "java.lang.reflect.Constructor");
+    private final JadxDecompiler jadx;
+    // classes used by reflection, shared by all methods
+    private final ReflectionTargetCache targets;
+    // reflection values of static fields, null to resolve chains inside one method only
+    private FieldSummaries fieldSummaries;
+    private LongAdder found = new LongAdder();
+    private LongAdder rewritten = new LongAdder();
+    private LongAdder failed = new LongAdder();
 
     public ReflectionVisitor() {
-        graph = new ReflectionGraph();
         jadx = null;
+        targets = new ReflectionTargetCache(null);
     }
 
     public ReflectionVisitor(JadxDecompiler j) {
-        graph = new ReflectionGraph();
         jadx = j;
+        targets = new ReflectionTargetCache(j);
+    }
+
+    public void setMetrics(PassMetrics metrics) {
+        found = metrics.counter(PassMetrics.REFLECTION_FOUND);
+        rewritten = metrics.counter(PassMetrics.REFLECTION_REWRITTEN);
+        failed = metrics.counter(PassMetrics.REFLECTION_FAILED);
+        metrics.gauge("reflection.targets", targets::size);
+        if (fieldSummaries != null) {
+            metrics.gauge("reflection.summaries", fieldSummaries::size);
+        }
+    }
+
+    /**
+     * Also rewrite calls on Class, Method and Constructor objects loaded from static fields,
+     * like the ones set in {@code <clinit>} by obfuscators.
+     */
+    public void setFieldSummaries(FieldSummaries fieldSummaries) {
+        this.fieldSummaries = fieldSummaries;
     }
 
     @Override
     public void visit(MethodNode mth) {
-        for (BlockNode blockNode : mth.getBasicBlocks()) {
-            for (InsnNode insnNode : blockNode.getInstructions()) {
-                ArrayList<ReflectionNode> nodeList = new ArrayList<>();
-                if (isReflection(insnNode, nodeList)) {
-                    if (nodeList.size() == 1) {
-                        graph.addNode(nodeList.get(0));
-                    } else if (nodeList.size() > 1) {
-                        graph.addList(nodeList);
-                    }
-                }
-            }
+        InsnScanner.scan(mth, this);
+    }
+
+    @Override
+    public Set<InsnType> getInsnTypes() {
+        return fieldSummaries != null ? Set.of(InsnType.SGET) : Set.of();
+    }
+
+    @Override
+    public Set<String> getCalleeNames() {
+        return Set.of("forName", "invoke", "getMethod", "getField", "getConstructor", "newInstance");
+    }
+
+    @Override
+    public Set<String> getIndexedCallees() {
+        return Set.of("java.lang.Class.forName", "java.lang.reflect.Method.invoke", "java.lang.Class.getMethod",
+                "java.lang.Class.getField", "java.lang.Class.getConstructor", "java.lang.reflect.Constructor.newInstance");
+    }
+
+    @Override
+    public Set<String> getIndexedFieldTypes() {
+        return fieldSummaries != null ? REFLECTION_FIELD_TYPES : Set.of();
+    }
+
+    @Override
+    public ReflectionGraph start(MethodNode mth) {
+        // jadx may visit methods from several threads, keep the graph local to the method
+        return new ReflectionGraph();
+    }
+
+    @Override
+    public void handle(MethodNode mth, InsnNode insnNode, ReflectionGraph graph) {
+        if (insnNode.getType() == InsnType.SGET) {
+            addLoaded(insnNode, graph);
+        } else {
+            addReflection(insnNode, graph);
         }
+    }
+
+    @Override
+    public String getCacheKey() {
+        return fieldSummaries != null ? getClass().getName() + ":fields" : getClass().getName();
+    }
+
+    @Override
+    public void finish(MethodNode mth, ReflectionGraph graph) {
+        found.add(graph.getRootCount());
         if (graph.shouldOptimize()) {
-            optimizeReflection(mth);
+            optimizeReflection(mth, graph);
         }
-        graph.clear();
     }
 
-    public boolean isReflection(InsnNode insnNode, ArrayList<ReflectionNode> list) {
-        if (insnNode.getType().equals(InsnType.INVOKE)) {
-            String fullName = ((InvokeNode) insnNode).getCallMth().getFullName();
+    /**
+     * Add reflection call to the graph.
+     * Reflection calls inlined into its arguments must be already added.
+     *
+     * @return id of the added node or {@link ReflectionGraph#NONE}
+     */
+    public int addReflection(InsnNode insnNode, ReflectionGraph graph) {
+        String fullName = ((InvokeNode) insnNode).getCallMth().getFullName();
+        ReflectionType type;
+        switch (fullName) {
+            case "java.lang.Class.forName" -> {
+                return addForName(insnNode, graph);
+            }
+            case "java.lang.reflect.Method.invoke" -> type = ReflectionType.INVOKE;
+            case "java.lang.Class.getMethod" -> type = ReflectionType.GETMETHOD;
+            case "java.lang.Class.getField" -> type = ReflectionType.GETFIELD;
+            case "java.lang.Class.getConstructor" -> type = ReflectionType.CONSTRUCTOR;
+            case "java.lang.reflect.Constructor.newInstance" -> type = ReflectionType.NEWINSTANCE;
+            default -> {
+                return ReflectionGraph.NONE;
+            }
+        }
+        // the first argument is the Class/Method/Constructor object the call is made on
+        int parent = graph.getProducer(insnNode.getArg(0));
+        ArrayList<InsnArg> args = new ArrayList<>();
+        for (InsnArg arg : insnNode.getArguments()) {
+            // skip inlined reflection calls
+            if (arg.isInsnWrap() && graph.getProducer(arg) != ReflectionGraph.NONE) {
+                continue;
+            }
+            args.add(arg);
+        }
+        return graph.addNode(type, insnNode, args, insnNode.getResult(), parent);
+    }
 
-            switch (fullName) {
-                case "java.lang.Class.forName" -> {
-                    // only one argument
-                    InsnArg arg = insnNode.getArg(0);
-                    ReflectionRoot forNameNode = new ReflectionRoot(ReflectionType.FORNAME, arg, insnNode);
-                    String className = "";
-                    if (arg.isInsnWrap()) {
-                        InsnNode node = ((InsnWrapArg) arg).unwrap();
-                        if (node instanceof ConstStringNode) {
-                            className = ((ConstStringNode) node).getString();
-                        }
-                    } else if (arg.isLiteral()) {
-                        className = ((LiteralArg) arg).toString();
-                    }
-                    if (!className.isEmpty()) {
-                        forNameNode.setClassNode(jadx.searchClassNodeByOrigFullName(className));
-                        forNameNode.setResult(insnNode.getResult());
-                        list.add(forNameNode);
-                        return true;
-                    }
-                    return false;
-                }
-                case "java.lang.reflect.Method.invoke" -> {
-                    ArrayList<InsnArg> args = new ArrayList<>();
-                    for (InsnArg arg : insnNode.getArguments()) {
-                        if (arg.isInsnWrap()) {
-                            if (!isReflection(((InsnWrapArg) arg).getWrapInsn(), list)) {
-                                args.add(arg);
-                            }
-                        } else {
-                            args.add(arg);
-                        }
-                    }
-                    ReflectionNode invokeNode = new ReflectionNode(ReflectionType.INVOKE, args, insnNode);
-                    invokeNode.setResult(insnNode.getResult());
-                    list.add(invokeNode);
-                    return true;
-                }
-                case "java.lang.Class.getMethod" -> {
-                    ArrayList<InsnArg> args = new ArrayList<>();
-                    for (InsnArg arg : insnNode.getArguments()) {
-                        if (arg.isInsnWrap()) {
-                            if (!isReflection(((InsnWrapArg) arg).getWrapInsn(), list)) {
-                                args.add(arg);
-                            }
-                        } else {
-                            args.add(arg);
-                        }
-                    }
-                    ReflectionNode getMethodNode = new ReflectionNode(ReflectionType.GETMETHOD, args, insnNode);
-                    getMethodNode.setResult((insnNode).getResult());
-                    list.add(getMethodNode);
-                    return true;
-                }
-                case "java.lang.Class.getField" -> {
-                    ArrayList<InsnArg> args = new ArrayList<>();
-                    for (InsnArg arg : insnNode.getArguments()) {
-                        if (arg.isInsnWrap()) {
-                            if (!isReflection(((InsnWrapArg) arg).getWrapInsn(), list)) {
-                                args.add(arg);
-                            }
-                        } else {
-                            args.add(arg);
-                        }
-                    }
-                    ReflectionNode getFieldNode = new ReflectionNode(ReflectionType.GETFIELD, args, insnNode);
-                    getFieldNode.setResult((insnNode).getResult());
-                    list.add(getFieldNode);
-                    return true;
-                }
-                case "java.lang.Class.getConstructor" -> {
-                    ArrayList<InsnArg> args = new ArrayList<>();
-                    for (InsnArg arg : insnNode.getArguments()) {
-                        if (arg.isInsnWrap()) {
-                            if (!isReflection(((InsnWrapArg) arg).getWrapInsn(), list)) {
-                                args.add(arg);
-                            }
-                        } else {
-                            args.add(arg);
-                        }
-                    }
-                    ReflectionNode constructorNode = new ReflectionNode(ReflectionType.CONSTRUCTOR, args, insnNode);
-                    constructorNode.setResult(insnNode.getResult());
-                    list.add(constructorNode);
-                    return true;
-                }
-                case "java.lang.reflect.Constructor.newInstance" -> {
-                    ArrayList<InsnArg> args = new ArrayList<>();
-                    for (InsnArg arg : insnNode.getArguments()) {
-                        if (arg.isInsnWrap()) {
-                            if (!isReflection(((InsnWrapArg) arg).getWrapInsn(), list)) {
-                                args.add(arg);
-                            }
-                        } else {
-                            args.add(arg);
-                        }
-                    }
-                    ReflectionNode newInstanceNode = new ReflectionNode(ReflectionType.NEWINSTANCE, args, insnNode);
-                    newInstanceNode.setResult(insnNode.getResult());
-                    list.add(newInstanceNode);
-                    return true;
-                }
-                default -> {
-                    return false;
-                }
+    private int addForName(InsnNode insnNode, ReflectionGraph graph) {
+        // only one argument
+        InsnArg arg = insnNode.getArg(0);
+        String className = "";
+        if (arg.isInsnWrap()) {
+            InsnNode node = ((InsnWrapArg) arg).unwrap();
+            if (node instanceof ConstStringNode) {
+                className = ((ConstStringNode) node).getString();
             }
+        } else if (arg.isLiteral()) {
+            className = ((LiteralArg) arg).toString();
+        }
+        if (className.isEmpty()) {
+            return ReflectionGraph.NONE;
+        }
+        return graph.addRoot(insnNode, List.of(arg), insnNode.getResult(), targets.resolve(className));
+    }
+
+    /**
+     * Add a reflection object loaded from a static field, as if the calls its initializer made were in this method.
+     *
+     * @return id of the node producing the loaded value or {@link ReflectionGraph#NONE}
+     */
+    private int addLoaded(InsnNode insnNode, ReflectionGraph graph) {
+        FieldInfo field = (FieldInfo) ((IndexInsnNode) insnNode).getIndex();
+        if (!field.getType().isObject() || !REFLECTION_FIELD_TYPES.contains(field.getType().getObject())) {
+            return ReflectionGraph.NONE;
+        }
+        FieldValue value = fieldSummaries.getValue(field);
+        if (value == null) {
+            return ReflectionGraph.NONE;
+        }
+        ReflectionTarget target = targets.resolve(value.getClassName());
+        int id;
+        if (value.getType() == ReflectionType.FORNAME) {
+            id = graph.addRoot(insnNode, List.of(), insnNode.getResult(), target);
         } else {
-            for (InsnArg arg : insnNode.getArguments()) {
-                if (arg.isInsnWrap()) {
-                    isReflection(((InsnWrapArg) arg).getWrapInsn(), list);
-                }
+            // the class object is not in this method
+            int root = graph.addRoot(null, List.of(), null, target);
+            id = graph.addNode(value.getType(), insnNode, List.of(), insnNode.getResult(), root);
+        }
+        graph.setLoaded(id, field, value.getType() == ReflectionType.GETMETHOD ? value.getMethodName() : null,
+                value.getParamTypes());
+        return id;
+    }
+
+    public void optimizeReflection(MethodNode mth, ReflectionGraph graph) {
+        for (int i = 0; i < graph.getRootCount(); i++) {
+            int root = graph.getRoot(i);
+            boolean instancesDone = buildInstance(root, mth, graph);
+            boolean invokesDone = buildInvoke(root, mth, graph);
+            // remove forName method, unless some call still uses the class object
+            if (instancesDone && invokesDone) {
+                removeNode(mth, graph, root);
             }
         }
-        return false;
     }
 
-    public void optimizeReflection(MethodNode mth) {
-        CopyOnWriteArrayList<ReflectionRoot> roots = graph.getRoots();
-        for (ReflectionRoot root : roots) {
-            buildInstance(root, mth);
-            buildInvoke(root, mth);
-            // remove forName method
-            InsnRemover.remove(mth, root.getInsnNode());
+    // loads of fields are removed only when nothing else uses the loaded value
+    private static void removeNode(MethodNode mth, ReflectionGraph graph, int node) {
+        InsnNode insn = graph.getInsnNode(node);
+        if (insn == null) {
+            return;
+        }
+        if (graph.getLoadedFrom(node) != null) {
+            RegisterArg res = insn.getResult();
+            // a wrapped load went away with the call it was wrapped into
+            if (res == null || res.getSVar().getUseCount() != 0) {
+                return;
+            }
+        }
+        // the Class[] of getMethod or getConstructor is dead with the call
+        List<InsnNode> arrayInsns = new ArrayList<>();
+        ReflectionType type = graph.getType(node);
+        if (graph.getLoadedFrom(node) == null && (type == ReflectionType.GETMETHOD || type == ReflectionType.CONSTRUCTOR)
+                && insn.getArgsCount() != 0) {
+            // arrayInsns stays empty if the array is not known
+            addArrayElements(insn, insn.getArg(insn.getArgsCount() - 1), new ArrayList<>(), arrayInsns);
         }
+        InsnRemover.remove(mth, insn);
+        removeArray(mth, arrayInsns);
     }
 
-    private void buildInstance(ReflectionRoot root, MethodNode mth) {
+    private boolean buildInstance(int root, MethodNode mth, ReflectionGraph graph) {
+        ReflectionTarget target = graph.getTarget(root);
+        boolean done = true;
         // find NEWINSTANCE
-        for (ReflectionNode ConstructorNode : root.getSuccessors()) {
+        for (int constructor = graph.getFirstSuccessor(root); constructor != ReflectionGraph.NONE; constructor = graph.getNextSibling(constructor)) {
             // has constructor
-            if (ConstructorNode.getType().equals(ReflectionType.CONSTRUCTOR)) {
-                List<ReflectionNode> instances = ConstructorNode.getSuccessors();
-                if (!instances.isEmpty()) {
-                    for (ReflectionNode instance : instances) {
-
-                        if (instance.getType().equals(ReflectionType.NEWINSTANCE)) {
-                            RegisterArg res = instance.getResult();
+            if (graph.getType(constructor).equals(ReflectionType.CONSTRUCTOR)) {
+                List<ArgType> paramTypes = parseParamTypes(graph, constructor);
+                int instance = graph.getFirstSuccessor(constructor);
+                if (instance != ReflectionGraph.NONE) {
+                    boolean replaced = true;
+                    for (; instance != ReflectionGraph.NONE; instance = graph.getNextSibling(instance)) {
+                        if (graph.getType(instance).equals(ReflectionType.NEWINSTANCE)) {
+                            RegisterArg res = graph.getResult(instance);
                             // get arguments
-                            ArrayList<InsnArg> args = ParesArguments(instance);
-                            InsnNode newInstance = makeNewInstanceInsn(res, args, mth, root);
-
-                            BlockUtils.replaceInsn(mth, instance.getInsnNode(), newInstance);
+                            List<InsnNode> arrayInsns = new ArrayList<>();
+                            ArrayList<InsnArg> args = ParesArguments(graph, instance, arrayInsns);
+                            InsnNode newInstance = args != null ? makeNewInstanceInsn(res, args, paramTypes, target) : null;
+                            if (newInstance != null) {
+                                BlockUtils.replaceInsn(mth, graph.getInsnNode(instance), newInstance);
+                                removeArray(mth, arrayInsns);
+                                rewritten.increment();
+                            } else {
+                                replaced = false;
+                                failed.increment();
+                            }
                         }
                     }
                     // remove getConstructor method
-                    InsnRemover.remove(mth, ConstructorNode.getInsnNode());
+                    if (replaced) {
+                        removeNode(mth, graph, constructor);
+                    } else {
+                        done = false;
+                    }
                 }
-                // remove constructorNode and it successors
-                this.graph.removeNode(ConstructorNode);
             }
         }
+        return done;
     }
 
-    private void buildInvoke(ReflectionRoot root, MethodNode mth) {
+    private boolean buildInvoke(int root, MethodNode mth, ReflectionGraph graph) {
         // get the arguments(the third argument, an array contain all arguments)
         // and call object(the second argument) from INVOKE node
         // get the method name and argument type from GETMETHOD node,
-        for (ReflectionNode getMethodNode : root.getSuccessors()) {
-            if (getMethodNode.getType().equals(ReflectionType.GETMETHOD)) {
-                String methodName = parseMethodName(getMethodNode);
+        ReflectionTarget target = graph.getTarget(root);
+        boolean done = true;
+        for (int getMethod = graph.getFirstSuccessor(root); getMethod != ReflectionGraph.NONE; getMethod = graph.getNextSibling(getMethod)) {
+            if (graph.getType(getMethod).equals(ReflectionType.GETMETHOD)) {
+                String methodName = parseMethodName(graph, getMethod);
                 if (!methodName.isEmpty()) {
-                    for (ReflectionNode invoke : getMethodNode.getSuccessors()) {
-                        ArrayList<InsnArg> args = ParesArguments(invoke);
-                        RegisterArg res = invoke.getResult();
-                        InsnNode invokeNode = makeInvokeInsn(mth, methodName, args, res, root);
-
-                        BlockUtils.replaceInsn(mth, invoke.getInsnNode(), invokeNode);
+                    List<ArgType> paramTypes = parseParamTypes(graph, getMethod);
+                    boolean replaced = true;
+                    for (int invoke = graph.getFirstSuccessor(getMethod); invoke != ReflectionGraph.NONE; invoke = graph.getNextSibling(invoke)) {
+                        List<InsnNode> arrayInsns = new ArrayList<>();
+                        ArrayList<InsnArg> args = ParesArguments(graph, invoke, arrayInsns);
+                        RegisterArg res = graph.getResult(invoke);
+                        InsnNode invokeNode = args != null ? makeInvokeInsn(methodName, paramTypes, args, res, target) : null;
+                        if (invokeNode != null) {
+                            BlockUtils.replaceInsn(mth, graph.getInsnNode(invoke), invokeNode);
+                            removeArray(mth, arrayInsns);
+                            rewritten.increment();
+                        } else {
+                            replaced = false;
+                            failed.increment();
+                        }
                     }
                     // remove getMethod method
-                    InsnRemover.remove(mth, getMethodNode.getInsnNode());
+                    if (replaced) {
+                        removeNode(mth, graph, getMethod);
+                    } else {
+                        done = false;
+                    }
                 } else {
                     // fail to parse method name
-                    continue;
+                    done = false;
+                    failed.increment();
                 }
             }
-            this.graph.removeNode(getMethodNode);
         }
+        return done;
     }
 
-    private String parseMethodName(ReflectionNode node) {
+    private String parseMethodName(ReflectionGraph graph, int node) {
+        if (graph.getLoadedFrom(node) != null) {
+            return graph.getLoadedName(node);
+        }
         String name = "";
-        InsnArg arg = node.getArgs().get(0);
+        List<InsnArg> nodeArgs = graph.getArgs(node);
+        InsnArg arg = nodeArgs.get(0);
         // not inline call
         if (arg.isRegister()) {
-            arg = node.getArgs().get(1);
+            arg = nodeArgs.get(1);
         }
         if (arg.isLiteral()) {
             name = ((LiteralArg) arg).toString();
@@ -251,51 +337,127 @@ public class ReflectionVisitor extends AbstractVisitor {
         return name;
     }
 
-    private ArrayList<InsnArg> ParesArguments(ReflectionNode node) {
+    // Class[] given to getMethod or getConstructor, null if not known
+    private List<ArgType> parseParamTypes(ReflectionGraph graph, int node) {
+        if (graph.getLoadedFrom(node) != null) {
+            return graph.getLoadedParamTypes(node);
+        }
+        List<InsnArg> nodeArgs = graph.getArgs(node);
+        if (nodeArgs.isEmpty()) {
+            return null;
+        }
+        return ParamTypes.parse(nodeArgs.get(nodeArgs.size() - 1));
+    }
+
+    /**
+     * Arguments of the direct call: the object of {@code invoke} and the elements of the {@code Object[]}.
+     * The scanner runs before CodeShrinkVisitor, so the array is usually a register filled by APUTs,
+     * these and the NEW_ARRAY are added to {@code arrayInsns} to be removed with the call.
+     *
+     * @return null if the elements are not known
+     */
+    private ArrayList<InsnArg> ParesArguments(ReflectionGraph graph, int node, List<InsnNode> arrayInsns) {
+        InsnNode call = graph.getInsnNode(node);
+        int count = call.getArgsCount();
+        if (count < 2) {
+            return null;
+        }
         ArrayList<InsnArg> args = new ArrayList<>();
-        for (InsnArg arg : node.getArgs()) {
-            if (arg.isRegister()) {
-                if (node.getType().equals(ReflectionType.NEWINSTANCE)) {
-                    if (((RegisterArg) arg).getSVar().getCodeVar().getType().getObject().equals("java.lang.reflect.Constructor")) {
-                        continue;
-                    }
-                } else if (node.getType().equals(ReflectionType.INVOKE)) {
-                    if (((RegisterArg) arg).getSVar().getCodeVar().getType().getObject().equals("java.lang.reflect.Method")) {
-                        continue;
-                    }
-                }
-            } else if (arg.isInsnWrap()) {
-                InsnNode insnNode = ((InsnWrapArg) arg).getWrapInsn();
-                if (insnNode instanceof NewArrayNode) {
-                    // no argument
-                    InsnArg a = insnNode.getArg(0);
-                    if (a.isLiteral() && ((LiteralArg) a).getLiteral() == 0)
-                        continue;
-                } else if (insnNode instanceof FilledNewArrayNode) {
-                    for (InsnArg a : ((FilledNewArrayNode) insnNode).getArguments()) {
-                        args.add(a);
-                    }
-                    continue;
-                }
-            }
-            args.add(arg);
+        // the first argument is the Method or Constructor object, the last one the array
+        for (int i = 1; i < count - 1; i++) {
+            args.add(call.getArg(i));
         }
-        return args;
+        return addArrayElements(call, call.getArg(count - 1), args, arrayInsns) ? args : null;
     }
 
-    private InsnNode makeNewInstanceInsn(RegisterArg res, ArrayList<InsnArg> args, MethodNode mth, ReflectionRoot root) {
-        // find constructor method
-        Iterator var1 = root.getClassNode().getMethods().iterator();
-        MethodNode methodNode;
-        do {
-            if (!var1.hasNext()) {
-                return null;
+    private static boolean addArrayElements(InsnNode call, InsnArg array, List<InsnArg> args, List<InsnNode> arrayInsns) {
+        if (array.isLiteral()) {
+            // null array, no arguments
+            return ((LiteralArg) array).getLiteral() == 0;
+        }
+        InsnNode insn;
+        if (array.isInsnWrap()) {
+            insn = ((InsnWrapArg) array).getWrapInsn();
+        } else if (array.isRegister()) {
+            insn = ((RegisterArg) array).getAssignInsn();
+        } else {
+            return false;
+        }
+        if (insn instanceof FilledNewArrayNode) {
+            for (InsnArg element : insn.getArguments()) {
+                args.add(element.duplicate());
+            }
+            if (array.isRegister()) {
+                arrayInsns.add(insn);
+            }
+            return true;
+        }
+        if (!(insn instanceof NewArrayNode) || !insn.getArg(0).isLiteral()) {
+            return false;
+        }
+        long size = ((LiteralArg) insn.getArg(0)).getLiteral();
+        if (size == 0 || !array.isRegister()) {
+            if (array.isRegister()) {
+                arrayInsns.add(insn);
+            }
+            return size == 0;
+        }
+        if (size > 255) {
+            return false;
+        }
+        // elements put one by one before the call: a = new Object[2]; a[0] = x; a[1] = y
+        InsnArg[] elements = new InsnArg[(int) size];
+        List<InsnNode> stores = new ArrayList<>();
+        for (RegisterArg use : ((RegisterArg) array).getSVar().getUseList()) {
+            InsnNode parent = use.getParentInsn();
+            if (parent == call) {
+                continue;
+            }
+            // the array escapes or is changed in another way
+            if (parent == null || parent.getType() != InsnType.APUT || parent.getArg(0) != use || !parent.getArg(1).isLiteral()) {
+                return false;
             }
+            long index = ((LiteralArg) parent.getArg(1)).getLiteral();
+            if (index < 0 || index >= size || elements[(int) index] != null) {
+                return false;
+            }
+            elements[(int) index] = parent.getArg(2);
+            stores.add(parent);
+        }
+        for (InsnArg element : elements) {
+            if (element == null) {
+                return false;
+            }
+            args.add(element.duplicate());
+        }
+        arrayInsns.addAll(stores);
+        arrayInsns.add(insn);
+        return true;
+    }
 
-            methodNode = (MethodNode) var1.next();
-        } while (!methodNode.isConstructor() && methodNode.getArgRegs().size() == args.size());
+    // stores and creation of the argument array, unless it is still used after the call was replaced
+    private static void removeArray(MethodNode mth, List<InsnNode> arrayInsns) {
+        if (arrayInsns.isEmpty()) {
+            return;
+        }
+        RegisterArg array = arrayInsns.get(arrayInsns.size() - 1).getResult();
+        for (RegisterArg use : array.getSVar().getUseList()) {
+            if (!arrayInsns.contains(use.getParentInsn())) {
+                return;
+            }
+        }
+        for (InsnNode insn : arrayInsns) {
+            InsnRemover.remove(mth, insn);
+        }
+    }
 
-        ConstructorInsn constructorInsn = new ConstructorInsn(methodNode.getMethodInfo(), ConstructorInsn.CallType.CONSTRUCTOR);
+    private InsnNode makeNewInstanceInsn(RegisterArg res, ArrayList<InsnArg> args, List<ArgType> paramTypes, ReflectionTarget target) {
+        // find constructor method, an ambiguous call is left alone
+        MethodInfo methodInfo = target.resolveConstructor(paramTypes, args.size());
+        if (methodInfo == null || methodInfo.getArgsCount() != args.size()) {
+            return null;
+        }
+        ConstructorInsn constructorInsn = new ConstructorInsn(methodInfo, ConstructorInsn.CallType.CONSTRUCTOR);
         constructorInsn.setResult(res);
         for (InsnArg arg : args) {
             constructorInsn.addArg(arg);
@@ -303,28 +465,19 @@ public class ReflectionVisitor extends AbstractVisitor {
         return constructorInsn;
     }
 
-    private InsnNode makeInvokeInsn(MethodNode mth, String name, ArrayList<InsnArg> args, RegisterArg res, ReflectionRoot root) {
-        MethodNode callMethod = null;
-        if (root.getClassNode() == null) {
+    private InsnNode makeInvokeInsn(String name, List<ArgType> paramTypes, ArrayList<InsnArg> args, RegisterArg res, ReflectionTarget target) {
+        // first argument is the object the method is called on, an ambiguous call is left alone
+        MethodInfo methodInfo = target.resolveMethod(name, paramTypes, args.size() - 1);
+        if (methodInfo == null || methodInfo.getArgsCount() != args.size() - 1) {
             return null;
         }
-        for (MethodNode methodNode : root.getClassNode().getMethods()) {
-            if (methodNode.getMethodInfo().getName().equals(name)) {
-                callMethod = methodNode;
-                break;
-            }
+        InvokeNode invokeNode = new InvokeNode(methodInfo, InvokeType.VIRTUAL, methodInfo.getArgsCount() + 1);
+        for (InsnArg arg : args) {
+            invokeNode.addArg(arg);
         }
-        if (callMethod != null) {
-            MethodInfo methodInfo = callMethod.getMethodInfo();
-            InvokeNode invokeNode = new InvokeNode(methodInfo, InvokeType.VIRTUAL, methodInfo.getArgsCount() + 1);
-            for (InsnArg arg : args) {
-                invokeNode.addArg(arg);
-            }
-            if (res != null) {
-                invokeNode.setResult(res);
-            }
-            return invokeNode;
+        if (res != null) {
+            invokeNode.setResult(res);
         }
-        return null;
+        return invokeNode;
     }
 }
@@ -0,0 +1,113 @@
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aliases of a previous run, and aliases given in this run, in the jadx deobfuscation map format (.jobf):
+ * <pre>
+ * c a.b.c = aaaClass
+ * f a.b.c.a:I = a_int
+ * m a.b.c.a(I)V = a_int
+ * </pre>
+ * Keys are original names, so the map of yesterday's build can be applied to today's build of the same app.
+ */
+public class RenameMapping {
+    // loaded aliases, not changed after load
+    private final Map<String, String> knownClasses = new HashMap<>();
+    private final Map<String, String> knownFields = new HashMap<>();
+    private final Map<String, String> knownMethods = new HashMap<>();
+    // aliases given in this run, from any thread
+    private final Map<String, String> classes = new ConcurrentHashMap<>();
+    private final Map<String, String> fields = new ConcurrentHashMap<>();
+    private final Map<String, String> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @return mapping with aliases from the file, empty if the file doesn't exist
+     */
+    public static RenameMapping load(File file) throws IOException {
+        RenameMapping mapping = new RenameMapping();
+        if (file == null || !file.exists()) {
+            return mapping;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int eq = line.indexOf(" = ");
+                if (line.startsWith("#") || line.length() < 3 || line.charAt(1) != ' ' || eq < 0) {
+                    continue;
+                }
+                String key = line.substring(2, eq).trim();
+                String alias = line.substring(eq + 3).trim();
+                switch (line.charAt(0)) {
+                    case 'c' -> mapping.knownClasses.put(key, alias);
+                    case 'f' -> mapping.knownFields.put(key, alias);
+                    case 'm' -> mapping.knownMethods.put(key, alias);
+                    default -> {
+                    }
+                }
+            }
+        }
+        return mapping;
+    }
+
+    public String getClassAlias(ClassNode classNode) {
+        return knownClasses.get(classNode.getClassInfo().makeRawFullName());
+    }
+
+    public String getFieldAlias(FieldNode fieldNode) {
+        return knownFields.get(fieldNode.getFieldInfo().getRawFullId());
+    }
+
+    public String getMethodAlias(MethodNode methodNode) {
+        return knownMethods.get(methodNode.getMethodInfo().getRawFullId());
+    }
+
+    public void addClass(ClassNode classNode, String alias) {
+        classes.put(classNode.getClassInfo().makeRawFullName(), alias);
+    }
+
+    public void addField(FieldNode fieldNode, String alias) {
+        fields.put(fieldNode.getFieldInfo().getRawFullId(), alias);
+    }
+
+    public void addMethod(MethodNode methodNode, String alias) {
+        methods.put(methodNode.getMethodInfo().getRawFullId(), alias);
+    }
+
+    public int getKnownCount() {
+        return knownClasses.size() + knownFields.size() + knownMethods.size();
+    }
+
+    /**
+     * Save aliases given in this run, sorted so files of two runs can be compared.
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            write(writer, 'c', classes);
+            write(writer, 'f', fields);
+            write(writer, 'm', methods);
+        }
+    }
+
+    private static void write(Writer writer, char type, Map<String, String> aliases) throws IOException {
+        for (Map.Entry<String, String> entry : new TreeMap<>(aliases).entrySet()) {
+            writer.write(type + " " + entry.getKey() + " = " + entry.getValue() + '\n');
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * New short names of all obfuscated classes, each name is computed only once.
+ * A class name is built from the names of its ancestors, so ancestors are planned first
+ * and {@link #apply()} renames them in that order.
+ * Classes with an alias in the {@link RenameMapping} get it without checking their names.
+ */
+public class RenamePlan {
+    private final RootNode root;
+    private final NameAllocator allocator;
+    private final RenameMapping mapping;
+    // classes to rename, ancestors rejected by it keep their names
+    private final Predicate<ClassNode> filter;
+    // planned names in ancestor first order
+    private final Map<ClassNode, String> names = new LinkedHashMap<>();
+    // classes with a name being computed, to stop on cyclic (broken) hierarchies
+    private final Set<ClassNode> inProgress = new HashSet<>();
+
+    private RenamePlan(RootNode root, NameAllocator allocator, RenameMapping mapping, Predicate<ClassNode> filter) {
+        this.root = root;
+        this.allocator = allocator;
+        this.mapping = mapping;
+        this.filter = filter;
+    }
+
+    /**
+     * @param filter classes to rename, others keep their names
+     */
+    public static RenamePlan build(RootNode root, NameAllocator allocator, RenameMapping mapping, Predicate<ClassNode> filter) {
+        RenamePlan plan = new RenamePlan(root, allocator, mapping, filter);
+        // classes with an alias from the mapping are planned first, only the others are checked
+        List<ClassNode> unknown = new ArrayList<>();
+        for (ClassNode classNode : root.getClasses()) {
+            if (!classNode.getClassInfo().hasAlias() && filter.test(classNode)) {
+                if (mapping.getClassAlias(classNode) != null) {
+                    plan.plan(classNode);
+                } else {
+                    unknown.add(classNode);
+                }
+            }
+        }
+        String[] fullNames = new String[unknown.size()];
+        for (int i = 0; i < fullNames.length; i++) {
+            fullNames[i] = unknown.get(i).getFullName();
+        }
+        boolean[] obfuscated = MyRenameVisitor.isObfuscationNames(fullNames);
+        for (int i = 0; i < fullNames.length; i++) {
+            if (obfuscated[i]) {
+                plan.plan(unknown.get(i));
+            }
+        }
+        return plan;
+    }
+
+    public void apply() {
+        for (Map.Entry<ClassNode, String> entry : names.entrySet()) {
+            entry.getKey().getClassInfo().changeShortName(entry.getValue());
+            mapping.addClass(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public String getName(ClassNode classNode) {
+        return names.get(classNode);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private String plan(ClassNode classNode) {
+        String planned = names.get(classNode);
+        if (planned != null) {
+            return planned;
+        }
+        String known = mapping.getClassAlias(classNode);
+        if (known != null) {
+            String name = allocator.allocateClassName(classNode, known);
+            names.put(classNode, name);
+            return name;
+        }
+        if (!inProgress.add(classNode)) {
+            return classNode.getShortName();
+        }
+        String oldName = classNode.getShortName();
+        StringBuilder newName = new StringBuilder();
+        // first the first three letters of the oldName to distinguish the same inheritance
+        if (oldName.length() < 3) {
+            newName.append(oldName);
+        } else {
+            newName.append(oldName, 0, 3);
+        }
+
+        // classNode has super Class
+        ArgType superClass = classNode.getSuperClass();
+        if (superClass != null && !superClass.equals(ArgType.OBJECT)) {
+            appendSuperTypes(classNode.getType(), newName);
+        }
+        // class without extends but has interfaces
+        else if (!classNode.getInterfaces().isEmpty()) {
+            appendInterfaces(classNode.getType(), newName);
+        } else {
+            newName.append("Class");
+        }
+        inProgress.remove(classNode);
+        String name = allocator.allocateClassName(classNode, newName.toString());
+        names.put(classNode, name);
+        return name;
+    }
+
+    // name of an obfuscated ancestor, excluded ancestors are not renamed and keep their name
+    private String planAncestor(ClassNode classNode) {
+        if (!filter.test(classNode)) {
+            return classNode.getShortName();
+        }
+        return plan(classNode);
+    }
+
+    // names of super classes up to the first obfuscated one, which is named by its plan
+    private void appendSuperTypes(ArgType type, StringBuilder newName) {
+        ClassNode classNode = root.resolveClass(type);
+        while (classNode != null) {
+            ArgType superType = classNode.getSuperClass();
+            if (superType == null || superType.equals(ArgType.OBJECT)) {
+                return;
+            }
+            String superName = MyPlugin.extractClassName(superType.getObject());
+            if (superName != null) {
+                // name of super is obfuscation
+                if (MyRenameVisitor.isObfuscationName(superName)) {
+                    ClassNode superClass = root.resolveClass(superType);
+                    if (superClass != null) {
+                        newName.append(planAncestor(superClass));
+                        return;
+                    }
+                } else {
+                    newName.append(superName);
+                }
+            }
+            classNode = root.resolveClass(superType);
+        }
+    }
+
+    private void appendInterfaces(ArgType type, StringBuilder newName) {
+        ClassNode classNode = root.resolveClass(type);
+        if (classNode == null) {
+            return;
+        }
+        for (ArgType iface : classNode.getInterfaces()) {
+            String ifaceName = MyPlugin.extractClassName(iface.getObject());
+            if (ifaceName != null) {
+                // name of interface is obfuscation
+                if (MyRenameVisitor.isObfuscationName(ifaceName)) {
+                    ClassNode ifaceClass = root.resolveClass(iface);
+                    if (ifaceClass != null) {
+                        newName.append(planAncestor(ifaceClass));
+                        return;
+                    }
+                } else {
+                    newName.append(ifaceName);
+                }
+            }
+            appendInterfaces(iface, newName);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ResultCache;
+
+import jadx.api.plugins.input.data.ICatch;
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IFieldData;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.IMethodProto;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.data.ITry;
+import jadx.api.plugins.input.data.attributes.IJadxAttrType;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.InsnIndexType;
+import jadx.core.dex.nodes.ClassNode;
+
+import java.util.List;
+
+/**
+ * 128 bit hash of the input data of one class (without inner classes): names, flags, constant values and code.
+ * References in the code are hashed by the names they point to, not by their index in the dex file,
+ * so an unchanged class has the same fingerprint in a new build of the app.
+ * Constant values of fields of other classes are not part of it, results using them should not be stored.
+ * Kept as class attribute, computed once per class load.
+ */
+public final class ClassFingerprint implements IJadxAttribute {
+    public static final IJadxAttrType<ClassFingerprint> TYPE = new IJadxAttrType<>() {
+    };
+
+    private final long high;
+    private final long low;
+
+    public ClassFingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static ClassFingerprint get(ClassNode cls) {
+        ClassFingerprint fingerprint = cls.get(TYPE);
+        if (fingerprint == null) {
+            fingerprint = compute(cls.getClsData());
+            cls.addAttr(fingerprint);
+        }
+        return fingerprint;
+    }
+
+    public static ClassFingerprint compute(IClassData clsData) {
+        Hasher hasher = new Hasher();
+        hasher.putString(clsData.getType());
+        hasher.putInt(clsData.getAccessFlags());
+        hasher.putString(clsData.getSuperType());
+        for (String iface : clsData.getInterfacesTypes()) {
+            hasher.putString(iface);
+        }
+        clsData.copy().visitFieldsAndMethods(field -> hashField(hasher, field), mth -> hashMethod(hasher, mth));
+        return new ClassFingerprint(hasher.finishHigh(), hasher.finishLow());
+    }
+
+    private static void hashField(Hasher hasher, IFieldData field) {
+        hasher.putInt('F');
+        hashFieldRef(hasher, field);
+        hasher.putInt(field.getAccessFlags());
+        for (IJadxAttribute attr : field.getAttributes()) {
+            if (attr.getAttrType() == JadxAttrType.CONSTANT_VALUE) {
+                hasher.putString(String.valueOf(attr));
+            }
+        }
+    }
+
+    private static void hashMethod(Hasher hasher, IMethodData mth) {
+        hasher.putInt('M');
+        hashMethodRef(hasher, mth.getMethodRef());
+        hasher.putInt(mth.getAccessFlags());
+        ICodeReader code = mth.getCodeReader();
+        if (code == null) {
+            return;
+        }
+        hasher.putInt(code.getRegistersCount());
+        hasher.putInt(code.getUnitsCount());
+        code.visitInstructions(insn -> hashInsn(hasher, insn));
+        for (ITry tryData : code.getTries()) {
+            hasher.putInt(tryData.getStartOffset());
+            hasher.putInt(tryData.getEndOffset());
+            ICatch catchData = tryData.getCatch();
+            for (String type : catchData.getTypes()) {
+                hasher.putString(type);
+            }
+            for (int handler : catchData.getHandlers()) {
+                hasher.putInt(handler);
+            }
+            hasher.putInt(catchData.getCatchAllHandler());
+        }
+    }
+
+    private static void hashInsn(Hasher hasher, InsnData insn) {
+        insn.decode();
+        InsnIndexType indexType = insn.getIndexType();
+        if (indexType == InsnIndexType.NONE) {
+            // registers, literals and payloads, no references to the dex tables
+            hasher.putBytes(insn.getByteCode());
+            return;
+        }
+        hasher.putInt(insn.getRawOpcodeUnit() & 0xFF);
+        int regsCount = insn.getRegsCount();
+        hasher.putInt(regsCount);
+        for (int i = 0; i < regsCount; i++) {
+            hasher.putInt(insn.getReg(i));
+        }
+        switch (indexType) {
+            case STRING_REF -> hasher.putString(insn.getIndexAsString());
+            case TYPE_REF -> hasher.putString(insn.getIndexAsType());
+            case FIELD_REF -> hashFieldRef(hasher, insn.getIndexAsField());
+            case METHOD_REF -> hashMethodRef(hasher, insn.getIndexAsMethod());
+            // call sites have no stable name, an other index only makes a cache miss
+            default -> hasher.putInt(insn.getIndex());
+        }
+    }
+
+    private static void hashFieldRef(Hasher hasher, IFieldRef field) {
+        hasher.putString(field.getParentClassType());
+        hasher.putString(field.getName());
+        hasher.putString(field.getType());
+    }
+
+    private static void hashMethodRef(Hasher hasher, IMethodRef mth) {
+        mth.load();
+        hasher.putString(mth.getParentClassType());
+        hasher.putString(mth.getName());
+        hashProto(hasher, mth);
+    }
+
+    private static void hashProto(Hasher hasher, IMethodProto proto) {
+        hasher.putString(proto.getReturnType());
+        List<String> argTypes = proto.getArgTypes();
+        hasher.putInt(argTypes.size());
+        for (String argType : argTypes) {
+            hasher.putString(argType);
+        }
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public IJadxAttrType<ClassFingerprint> getAttrType() {
+        return TYPE;
+    }
+
+    @Override
+    public String toAttrString() {
+        return "FINGERPRINT " + Long.toHexString(high) + Long.toHexString(low);
+    }
+
+    /**
+     * Two independent 64 bit lanes, each finished with the murmur3 mix.
+     */
+    static final class Hasher {
+        private static final long P1 = 0x9E3779B97F4A7C15L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+
+        private long h1 = 0x243F6A8885A308D3L;
+        private long h2 = 0x13198A2E03707344L;
+
+        void putLong(long v) {
+            h1 = Long.rotateLeft(h1 ^ v * P1, 31) * P2;
+            h2 = Long.rotateLeft(h2 + (v ^ P2) * P1, 27) * 5 + 0x52DCE729;
+        }
+
+        void putInt(int v) {
+            putLong(v & 0xFFFFFFFFL);
+        }
+
+        // length first, so that ("ab", "c") and ("a", "bc") are different
+        void putString(String s) {
+            if (s == null) {
+                putLong(-1);
+                return;
+            }
+            int len = s.length();
+            putInt(len);
+            int i = 0;
+            for (; i + 4 <= len; i += 4) {
+                putLong((long) s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48);
+            }
+            long tail = 0;
+            for (int shift = 0; i < len; i++, shift += 16) {
+                tail |= (long) s.charAt(i) << shift;
+            }
+            putLong(tail);
+        }
+
+        void putBytes(byte[] bytes) {
+            putInt(bytes.length);
+            long word = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                word = word << 8 | (bytes[i] & 0xFF);
+                if ((i & 7) == 7) {
+                    putLong(word);
+                    word = 0;
+                }
+            }
+            putLong(word);
+        }
+
+        long finishHigh() {
+            return fmix(h1 ^ h2);
+        }
+
+        long finishLow() {
+            return fmix(h2 + P1 * h1);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xFF51AFD7ED558CCDL;
+            k ^= k >>> 33;
+            k *= 0xC4CEB9FE1A85EC53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ResultCache;
+
+import jadx.core.dex.nodes.ClassNode;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of plugin passes for single classes, kept on disk between runs.
+ * Keys are the {@link ClassFingerprint} of the class, the plugin configuration and the name of the result,
+ * so a class gets results of a previous run only if its code and the configuration are the same.
+ * <p>
+ * The file is a header followed by entries {@code (key high, key low, length, data)}.
+ * It is memory mapped on open, new entries are appended on {@link #close()} after the last complete entry.
+ */
+public class ClassResultCache implements Closeable {
+    private static final int MAGIC = 0x4D50_5243;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_HEADER_SIZE = 20;
+
+    private final File file;
+    private final long configHash;
+    // key -> offset << 32 | length, of entries in the mapped file
+    private final Map<Key, Long> index = new HashMap<>();
+    private final MappedByteBuffer mapped;
+    // end of the last complete entry, 0 if the file is missing or has another format
+    private int end;
+    private final Map<Key, byte[]> added = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ClassResultCache(File file, long configHash, MappedByteBuffer mapped) {
+        this.file = file;
+        this.configHash = configHash;
+        this.mapped = mapped;
+    }
+
+    /**
+     * @param config plugin configuration, results of another configuration are not used
+     */
+    public static ClassResultCache open(File file, String config) throws IOException {
+        ClassFingerprint.Hasher hasher = new ClassFingerprint.Hasher();
+        hasher.putString(config);
+        long configHash = hasher.finishHigh();
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return new ClassResultCache(file, configHash, null);
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            return new ClassResultCache(file, configHash, null);
+        }
+        ClassResultCache cache = new ClassResultCache(file, configHash, mapped);
+        cache.readIndex();
+        return cache;
+    }
+
+    private void readIndex() {
+        int size = mapped.capacity();
+        int pos = HEADER_SIZE;
+        // an entry cut by an interrupted write ends the file
+        while (pos + ENTRY_HEADER_SIZE <= size) {
+            int length = mapped.getInt(pos + 16);
+            if (length < 0 || pos + ENTRY_HEADER_SIZE + length > size) {
+                break;
+            }
+            Key key = new Key(mapped.getLong(pos), mapped.getLong(pos + 8));
+            index.put(key, (long) (pos + ENTRY_HEADER_SIZE) << 32 | length);
+            pos += ENTRY_HEADER_SIZE + length;
+        }
+        end = pos;
+    }
+
+    /**
+     * @return stored result, null if the class was changed or not seen before
+     */
+    public byte[] get(ClassNode cls, String name) {
+        Key key = makeKey(cls, name);
+        byte[] data = added.get(key);
+        if (data == null) {
+            Long entry = index.get(key);
+            if (entry != null) {
+                data = new byte[(int) (long) entry];
+                mapped.get((int) (entry >>> 32), data);
+            }
+        }
+        if (data == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return data;
+    }
+
+    public void put(ClassNode cls, String name, byte[] data) {
+        Key key = makeKey(cls, name);
+        if (!index.containsKey(key)) {
+            added.put(key, data);
+        }
+    }
+
+    private Key makeKey(ClassNode cls, String name) {
+        ClassFingerprint fingerprint = ClassFingerprint.get(cls);
+        ClassFingerprint.Hasher hasher = new ClassFingerprint.Hasher();
+        hasher.putLong(configHash);
+        hasher.putString(name);
+        return new Key(fingerprint.getHigh() ^ hasher.finishHigh(), fingerprint.getLow() ^ hasher.finishLow());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Append results added in this run.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        // same order on every run
+        List<Map.Entry<Key, byte[]>> entries = added.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Key.ORDER))
+                .toList();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // drop an entry cut by an interrupted write
+            channel.truncate(end);
+            channel.position(end);
+            if (end == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(channel, header);
+            }
+            for (Map.Entry<Key, byte[]> entry : entries) {
+                byte[] data = entry.getValue();
+                ByteBuffer buf = ByteBuffer.allocate(ENTRY_HEADER_SIZE + data.length);
+                buf.putLong(entry.getKey().high).putLong(entry.getKey().low).putInt(data.length).put(data).flip();
+                writeFully(channel, buf);
+            }
+            end = (int) channel.position();
+        }
+        added.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClassResultCache{stored=" + index.size() + ", added=" + added.size()
+                + ", hits=" + getHits() + ", misses=" + getMisses() + '}';
+    }
+
+    /**
+     * Strings longer than {@link DataOutput#writeUTF} allows, as length and UTF-8 bytes.
+     */
+    public static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Key {
+        static final Comparator<Key> ORDER = Comparator.<Key>comparingLong(k -> k.high).thenComparingLong(k -> k.low);
+
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).high == high && ((Key) o).low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Single pass, allocation free check which encodings a string may contain.
+ * Decisions are the same as the regular expressions used before:
+ * <ul>
+ *     <li>base64: {@code ^(?:[A-Za-z0-9+/]{4})*(?:[A-Za-z0-9+/]{2}==|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{4})$}</li>
+ *     <li>url: {@code %[0-9A-Fa-f]{2}}</li>
+ *     <li>unicode: {@code \\u([0-9A-Fa-f]{4})+}</li>
+ * </ul>
+ * Other kinds are cheap hints for decoders without a marker in the string:
+ * <ul>
+ *     <li>hex: only hex digits, even length of at least {@value #MIN_GUESS_LENGTH}</li>
+ *     <li>gzip: base64 starting with the encoded gzip header</li>
+ *     <li>binary: latin-1 only with a control char, like a string xor-ed with one byte</li>
+ *     <li>rotated: mostly letters but few vowels, like a rotated (ROT-N) text</li>
+ * </ul>
+ */
+public final class StringClassifier {
+    public static final int BASE64 = 1;
+    public static final int URL = 1 << 1;
+    public static final int UNICODE = 1 << 2;
+    public static final int HEX = 1 << 3;
+    public static final int GZIP = 1 << 4;
+    public static final int BINARY = 1 << 5;
+    public static final int ROTATED = 1 << 6;
+
+    public static final int MIN_GUESS_LENGTH = 8;
+    // "H4sI" is the base64 of the gzip magic and deflate method
+    private static final String GZIP_PREFIX = "H4sI";
+
+    private static final byte BASE64_CHAR = 1;
+    private static final byte HEX_CHAR = 1 << 1;
+    private static final byte LETTER = 1 << 2;
+    private static final byte VOWEL = 1 << 3;
+    private static final byte[] TABLE = new byte[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            TABLE[c] |= BASE64_CHAR | LETTER;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TABLE[c] |= BASE64_CHAR | LETTER;
+        }
+        for (char c : "AEIOUaeiou".toCharArray()) {
+            TABLE[c] |= VOWEL;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            TABLE[c] |= BASE64_CHAR | HEX_CHAR;
+        }
+        for (char c = 'A'; c <= 'F'; c++) {
+            TABLE[c] |= HEX_CHAR;
+        }
+        for (char c = 'a'; c <= 'f'; c++) {
+            TABLE[c] |= HEX_CHAR;
+        }
+        TABLE['+'] |= BASE64_CHAR;
+        TABLE['/'] |= BASE64_CHAR;
+    }
+
+    private StringClassifier() {
+    }
+
+    /**
+     * @return bit set of the kinds above, 0 for plain text
+     */
+    public static int classify(String s) {
+        int len = s.length();
+        int base64End = base64End(s);
+        int result = base64End >= 4 && base64End % 4 == 0 ? BASE64 : 0;
+        boolean allHex = true;
+        boolean latin1 = true;
+        boolean control = false;
+        int letters = 0;
+        int vowels = 0;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            int flags = c < 128 ? TABLE[c] : 0;
+            if ((result & BASE64) != 0 && i < base64End && (flags & BASE64_CHAR) == 0) {
+                // '=' is allowed only as padding at the end: "xx==" or "xxx="
+                if (c != '=' || i < base64End - 2 || (i == base64End - 2 && s.charAt(i + 1) != '=')) {
+                    result &= ~BASE64;
+                }
+            }
+            if (c == '%') {
+                if (isUrlEscape(s, i)) {
+                    result |= URL;
+                }
+            } else if (c == '\\') {
+                if (isUnicodeEscape(s, i)) {
+                    result |= UNICODE;
+                }
+            } else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                control = true;
+            }
+            allHex &= (flags & HEX_CHAR) != 0;
+            latin1 &= c <= 0xFF;
+            if ((flags & LETTER) != 0) {
+                letters++;
+                if ((flags & VOWEL) != 0) {
+                    vowels++;
+                }
+            }
+        }
+        if (len >= MIN_GUESS_LENGTH) {
+            if (allHex && len % 2 == 0) {
+                result |= HEX;
+            }
+            if ((result & BASE64) != 0 && s.startsWith(GZIP_PREFIX)) {
+                result |= GZIP;
+            }
+            if (latin1 && control) {
+                result |= BINARY;
+            }
+            // english text has about 38% of vowels, after a rotation there are much less
+            if (letters * 4 >= len * 3 && vowels * 4 < letters) {
+                result |= ROTATED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * End of the base64 part: regex {@code $} also matches before a line terminator at the end of input.
+     */
+    public static int base64End(String s) {
+        int len = s.length();
+        if (len == 0) {
+            return 0;
+        }
+        char last = s.charAt(len - 1);
+        if (last == '\n') {
+            return len >= 2 && s.charAt(len - 2) == '\r' ? len - 2 : len - 1;
+        }
+        if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            return len - 1;
+        }
+        return len;
+    }
+
+    /**
+     * {@code %XX} starts at {@code i}
+     */
+    public static boolean isUrlEscape(String s, int i) {
+        return i + 2 < s.length() && s.charAt(i) == '%' && isHex(s.charAt(i + 1)) && isHex(s.charAt(i + 2));
+    }
+
+    /**
+     * {@code \\uXXXX} starts at {@code i}
+     */
+    public static boolean isUnicodeEscape(String s, int i) {
+        return hexRunLength(s, i) >= 4;
+    }
+
+    /**
+     * Count of hex digits after {@code \\u} starting at {@code i}, -1 if there is no {@code \\u}.
+     */
+    public static int hexRunLength(String s, int i) {
+        int len = s.length();
+        if (i + 1 >= len || s.charAt(i) != '\\' || s.charAt(i + 1) != 'u') {
+            return -1;
+        }
+        int j = i + 2;
+        while (j < len && isHex(s.charAt(j))) {
+            j++;
+        }
+        return j - i - 2;
+    }
+
+    public static boolean isBase64Char(char c) {
+        return c < 128 && (TABLE[c] & BASE64_CHAR) != 0;
+    }
+
+    public static boolean isLetter(char c) {
+        return c < 128 && (TABLE[c] & LETTER) != 0;
+    }
+
+    public static boolean isHex(char c) {
+        return c < 128 && (TABLE[c] & HEX_CHAR) != 0;
+    }
+
+    public static int hexValue(char c) {
+        if (c <= '9') {
+            return c - '0';
+        }
+        return (c | 0x20) - 'a' + 10;
+    }
+}
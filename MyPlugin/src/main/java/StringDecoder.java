@@ -0,0 +1,33 @@
+/**
+ * One decoding of a string, used by {@link DecodeEngine}.
+ * The engine classifies every string once with {@link StringClassifier} and calls a decoder only
+ * if the string has one of its {@link #getKinds() kinds}, cheaper decoders are tried first.
+ */
+public interface StringDecoder {
+    /**
+     * Name shown in the decode comments
+     */
+    String getName();
+
+    /**
+     * Bit set of {@link StringClassifier} kinds, the string must have at least one of them
+     */
+    int getKinds();
+
+    /**
+     * Relative cost of one call, decoders with lower cost are tried first
+     */
+    int getCost();
+
+    /**
+     * Guessing decoders (no marker in the string) are tried only if no other decoder succeeded.
+     */
+    default boolean isSpeculative() {
+        return false;
+    }
+
+    /**
+     * @return decoded string or null if the string can't be decoded
+     */
+    String decode(String s);
+}
@@ -0,0 +1,231 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decoding functions of the built-in {@link DecodeVisitor.DecodeType decoders}.
+ */
+public final class StringDecoders {
+    // protection against gzip bombs, longer output is cut
+    private static final int MAX_INFLATED_BYTES = 64 * 1024;
+    // share of letters needed to accept a guessed xor key
+    private static final double MIN_XOR_LETTER_SHARE = 0.5;
+    private static final double UPPER_CASE_PENALTY = -1.5;
+    private static final double SPACE_LOG_FREQ = Math.log(0.13);
+    private static final double COMMON_LOG_FREQ = Math.log(0.02);
+    private static final double OTHER_LOG_FREQ = Math.log(0.001);
+    // digits and punctuation of urls, paths and identifiers
+    private static final String COMMON_CHARS = "0123456789./:_-,";
+    // average log frequency of letters in english text and the gain needed to accept a rotation
+    private static final double MIN_ROT_SCORE = -3.3;
+    private static final double MIN_ROT_GAIN = 0.7;
+    // frequency of letters 'a'..'z' in english text, in %
+    private static final double[] LETTER_FREQ = {
+            8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4,
+            6.7, 7.5, 1.9, 0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074
+    };
+    private static final double[] LOG_FREQ = new double[26];
+
+    static {
+        for (int i = 0; i < 26; i++) {
+            LOG_FREQ[i] = Math.log(LETTER_FREQ[i] / 100);
+        }
+    }
+
+    private StringDecoders() {
+    }
+
+    public static String base64(String s) {
+        try {
+            byte[] decodedBytes = Base64.getDecoder().decode(s.substring(0, StringClassifier.base64End(s)));
+            return new String(decodedBytes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // join of all %XX escapes, each decoded on its own
+    public static String url(String s) {
+        StringBuilder sb = new StringBuilder();
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            if (StringClassifier.isUrlEscape(s, i)) {
+                int b = StringClassifier.hexValue(s.charAt(i + 1)) << 4 | StringClassifier.hexValue(s.charAt(i + 2));
+                // a single byte above 0x7F is not valid UTF-8
+                sb.append(b < 0x80 ? (char) b : '\uFFFD');
+                i += 3;
+            } else {
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    // join of all \\uXXXX escapes, for longer hex runs only the last 4 digits make the char
+    public static String unicode(String s) {
+        StringBuilder sb = new StringBuilder();
+        int len = s.length();
+        int i = 0;
+        while (i < len) {
+            int hexLen = StringClassifier.hexRunLength(s, i);
+            if (hexLen >= 4) {
+                int end = i + 2 + hexLen / 4 * 4;
+                int value = 0;
+                for (int j = end - 4; j < end; j++) {
+                    value = value << 4 | StringClassifier.hexValue(s.charAt(j));
+                }
+                sb.append((char) value);
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    // hex digits of UTF-8 text, binary data is rejected
+    public static String hex(String s) {
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (StringClassifier.hexValue(s.charAt(2 * i)) << 4 | StringClassifier.hexValue(s.charAt(2 * i + 1)));
+        }
+        return toText(bytes);
+    }
+
+    public static String gzipBase64(String s) {
+        try {
+            byte[] compressed = Base64.getDecoder().decode(s.substring(0, StringClassifier.base64End(s)));
+            byte[] bytes;
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                bytes = readLimited(in);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    // every char xor-ed with the same key, the key giving the most english-like text wins
+    public static String xor(String s) {
+        int len = s.length();
+        int bestKey = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int bestLetters = 0;
+        for (int key = 1; key < 0x100; key++) {
+            double score = 0;
+            int letters = 0;
+            int i = 0;
+            for (; i < len; i++) {
+                char c = (char) (s.charAt(i) ^ key);
+                if (!isPrintable(c)) {
+                    break;
+                }
+                if (StringClassifier.isLetter(c)) {
+                    letters++;
+                    // lower case is more common, this also decides between keys flipping the case
+                    score += LOG_FREQ[(c | 0x20) - 'a'] + (c >= 'a' ? 0 : UPPER_CASE_PENALTY);
+                } else {
+                    score += c == ' ' ? SPACE_LOG_FREQ : COMMON_CHARS.indexOf(c) >= 0 ? COMMON_LOG_FREQ : OTHER_LOG_FREQ;
+                }
+            }
+            if (i == len && score > bestScore) {
+                bestScore = score;
+                bestKey = key;
+                bestLetters = letters;
+            }
+        }
+        if (bestLetters < len * MIN_XOR_LETTER_SHARE) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            sb.append((char) (s.charAt(i) ^ bestKey));
+        }
+        return sb.toString();
+    }
+
+    // letters rotated by the same distance, scored by english letter frequencies
+    public static String rot(String s) {
+        int[] counts = new int[26];
+        int letters = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (StringClassifier.isLetter(c)) {
+                counts[(c | 0x20) - 'a']++;
+                letters++;
+            }
+        }
+        double original = rotScore(counts, 0, letters);
+        int bestShift = 0;
+        double bestScore = original;
+        for (int shift = 1; shift < 26; shift++) {
+            double score = rotScore(counts, shift, letters);
+            if (score > bestScore) {
+                bestScore = score;
+                bestShift = shift;
+            }
+        }
+        if (bestShift == 0 || bestScore < MIN_ROT_SCORE || bestScore - original < MIN_ROT_GAIN) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (StringClassifier.isLetter(c)) {
+                char base = c >= 'a' ? 'a' : 'A';
+                c = (char) (base + (c - base + bestShift) % 26);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // average log frequency of the letters after rotation
+    private static double rotScore(int[] counts, int shift, int letters) {
+        double sum = 0;
+        for (int i = 0; i < 26; i++) {
+            sum += counts[i] * LOG_FREQ[(i + shift) % 26];
+        }
+        return sum / letters;
+    }
+
+    private static String toText(byte[] bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try {
+            String text = decoder.decode(ByteBuffer.wrap(bytes)).toString();
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.isISOControl(text.charAt(i)) && !isPrintable(text.charAt(i))) {
+                    return null;
+                }
+            }
+            return text;
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readLimited(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while (out.size() < MAX_INFLATED_BYTES && (n = in.read(buf, 0, Math.min(buf.length, MAX_INFLATED_BYTES - out.size()))) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isPrintable(char c) {
+        return (c >= 0x20 && c < 0x7F) || c == '\t' || c == '\n' || c == '\r';
+    }
+}
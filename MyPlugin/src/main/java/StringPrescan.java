@@ -0,0 +1,151 @@
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IFieldData;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.annotations.EncodedType;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.api.plugins.input.data.attributes.JadxAttrType;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.InsnIndexType;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Strings of the input classified once, before the passes run, so the decode pass only scans classes using
+ * a string some decoder accepts.
+ * <p>
+ * Strings are read from the code kept by the jadx input plugins, without building methods.
+ * Each distinct string is classified once; only the set of classes using a candidate string,
+ * directly or through a constant String field, is kept after construction.
+ */
+public class StringPrescan {
+    private static final String STRING_TYPE = "Ljava/lang/String;";
+
+    // filled before the passes run, only read by them
+    private final Set<ClassNode> candidateClasses = new HashSet<>();
+    private final int stringCount;
+    private final int candidateCount;
+
+    /**
+     * @param filter classes to scan, others are never candidates
+     */
+    public StringPrescan(RootNode root, DecodeEngine engine, Predicate<ClassNode> filter) {
+        // constant String fields, loads of them are replaced by the constant
+        Map<String, String> constants = new ConcurrentHashMap<>();
+        root.getClasses().parallelStream().forEach(cls -> collectConstants(cls, constants));
+        List<ClassNode> classes = root.getClasses().stream().filter(filter).toList();
+        List<List<String>> strings = classes.parallelStream().map(cls -> collectStrings(cls, constants)).toList();
+        // string -> accepted by a decoder, dropped after construction
+        Map<String, Boolean> classified = new HashMap<>();
+        for (int i = 0; i < classes.size(); i++) {
+            ClassNode cls = classes.get(i);
+            for (String s : strings.get(i)) {
+                if (classified.computeIfAbsent(s, str -> engine.accepts(StringClassifier.classify(str)))) {
+                    candidateClasses.add(cls);
+                }
+            }
+        }
+        stringCount = classified.size();
+        int accepted = 0;
+        for (boolean candidate : classified.values()) {
+            if (candidate) {
+                accepted++;
+            }
+        }
+        candidateCount = accepted;
+    }
+
+    private static void collectConstants(ClassNode cls, Map<String, String> constants) {
+        IClassData clsData = cls.getClsData();
+        if (clsData == null) {
+            return;
+        }
+        clsData.copy().visitFieldsAndMethods(field -> {
+            String value = getConstant(field);
+            if (value != null) {
+                constants.put(getFieldKey(field), value);
+            }
+        }, mth -> {
+        });
+    }
+
+    private static String getConstant(IFieldData field) {
+        if (!field.getType().equals(STRING_TYPE)) {
+            return null;
+        }
+        for (IJadxAttribute attr : field.getAttributes()) {
+            if (attr.getAttrType() == JadxAttrType.CONSTANT_VALUE) {
+                EncodedValue value = (EncodedValue) attr;
+                return value.getType() == EncodedType.ENCODED_STRING ? (String) value.getValue() : null;
+            }
+        }
+        return null;
+    }
+
+    // strings of const-string instructions and of loaded constant fields
+    private static List<String> collectStrings(ClassNode cls, Map<String, String> constants) {
+        IClassData clsData = cls.getClsData();
+        if (clsData == null) {
+            return List.of();
+        }
+        List<String> strings = new ArrayList<>();
+        clsData.copy().visitFieldsAndMethods(field -> {
+        }, mth -> {
+            ICodeReader code = mth.getCodeReader();
+            if (code != null) {
+                code.visitInstructions(insn -> addString(insn, constants, strings));
+            }
+        });
+        return strings;
+    }
+
+    private static void addString(InsnData insn, Map<String, String> constants, List<String> strings) {
+        Opcode opcode = insn.getOpcode();
+        if (opcode != Opcode.CONST_STRING && opcode != Opcode.SGET) {
+            return;
+        }
+        insn.decode();
+        if (insn.getIndexType() == InsnIndexType.STRING_REF) {
+            strings.add(insn.getIndexAsString());
+        } else if (insn.getIndexType() == InsnIndexType.FIELD_REF) {
+            String constant = constants.get(getFieldKey(insn.getIndexAsField()));
+            if (constant != null) {
+                strings.add(constant);
+            }
+        }
+    }
+
+    private static String getFieldKey(IFieldRef field) {
+        return field.getParentClassType() + "->" + field.getName() + ':' + field.getType();
+    }
+
+    /**
+     * @return false if no method of the class uses a string the decoders accept
+     */
+    public boolean isCandidate(ClassNode cls) {
+        return candidateClasses.contains(cls);
+    }
+
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    public int getCandidateClassCount() {
+        return candidateClasses.size();
+    }
+}
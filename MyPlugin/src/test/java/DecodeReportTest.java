@@ -0,0 +1,43 @@
+import Interpreter.TestClass;
+import jadx.api.JadxArgs;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DecodeReportTest {
+    @Test
+    void resultIsNotCommentEscaped() throws Exception {
+        RootNode root = new RootNode(new JadxArgs());
+        TestClass cls = new TestClass(root, "a.b");
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.RETURN_VOID);
+        MethodInfo info = cls.addMethod(cls.ownMethodRef("m", "V"), TestClass.STATIC, 0, 0, code);
+        MethodNode mth = root.resolveMethod(info);
+
+        // "say \"hi\"\n" in Base64
+        String original = "c2F5ICJoaSIK";
+        String decoded = DecodeVisitor.DecodeType.BASE64.decode(original);
+        assertEquals("say \"hi\"\n", decoded);
+        DecodeStore store = new DecodeStore();
+        int[] chain = store.add(List.of(new DecodeVisitor.DecodeNode(DecodeVisitor.DecodeType.BASE64, decoded)));
+
+        StringWriter out = new StringWriter();
+        DecodeReport report = new DecodeReport(out, 4);
+        report.add(mth, original, chain, store);
+        report.close();
+        assertEquals("{\"class\":\"a.b\",\"method\":\"m()V\",\"original\":\"c2F5ICJoaSIK\","
+                + "\"chain\":[{\"codec\":\"Base64\",\"result\":\"say \\\"hi\\\"\\n\"}]}\n", out.toString());
+
+        // the comment still shows the escaped text
+        StringBuilder comment = new StringBuilder();
+        store.appendChain(comment, chain);
+        assertEquals(" --Base64-> say \\\"hi\\\"\\n", comment.toString());
+    }
+}
@@ -0,0 +1,350 @@
+package Interpreter;
+
+import PassMetrics.PassMetrics;
+import jadx.api.JadxArgs;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.data.annotations.EncodedType;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.RootNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static Interpreter.TestClass.CONSTRUCTOR;
+import static Interpreter.TestClass.FINAL;
+import static Interpreter.TestClass.STATIC;
+import static Interpreter.TestClass.STRING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MethodInterpreterTest {
+    private static final String BUILDER = "Ljava/lang/StringBuilder;";
+    private static final IMethodRef BUILDER_INIT = TestClass.methodRef(BUILDER, "<init>", "V");
+    private static final IMethodRef APPEND_INT = TestClass.methodRef(BUILDER, "append", BUILDER, "I");
+    private static final IMethodRef APPEND_LONG = TestClass.methodRef(BUILDER, "append", BUILDER, "J");
+    private static final IMethodRef APPEND_CHAR = TestClass.methodRef(BUILDER, "append", BUILDER, "C");
+    private static final IMethodRef APPEND_STRING = TestClass.methodRef(BUILDER, "append", BUILDER, STRING);
+    private static final IMethodRef BUILDER_TO_STRING = TestClass.methodRef(BUILDER, "toString", STRING);
+    private static final IMethodRef INT_TO_STRING = TestClass.methodRef("Ljava/lang/Integer;", "toString", STRING, "I");
+
+    private RootNode root;
+    private TestClass cls;
+    private PassMetrics metrics;
+    private MethodInterpreter interpreter;
+
+    @BeforeEach
+    void setUp() {
+        root = new RootNode(new JadxArgs());
+        cls = new TestClass(root, "a.b");
+        metrics = new PassMetrics();
+        interpreter = new MethodInterpreter(root, Intrinsics.create(root), 10_000, 1000);
+        interpreter.setMetrics(metrics);
+    }
+
+    private Object call(MethodInfo mth, Object... args) {
+        try {
+            return interpreter.getFunction(mth).apply(args);
+        } catch (Exception e) {
+            // failures of the interpreted code are returned as null
+            throw new AssertionError(e);
+        }
+    }
+
+    private boolean isDisabled(MethodInfo mth) {
+        return interpreter.getProgram(root.resolveMethod(mth)).isDisabled();
+    }
+
+    /**
+     * {@code return Integer.toString(reg)}, the last instructions of a method.
+     */
+    private static void returnInt(TestClass.Code code, int reg) {
+        code.add(Opcode.INVOKE_STATIC, reg).index(INT_TO_STRING);
+        code.add(Opcode.MOVE_RESULT, reg);
+        code.add(Opcode.RETURN, reg);
+    }
+
+    @Test
+    void arithmeticAndCasts() {
+        // int a in v7, long b in v8 and v9
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.NEW_INSTANCE, 0).index(BUILDER);
+        code.add(Opcode.INVOKE_DIRECT, 0).index(BUILDER_INIT);
+        code.add(Opcode.MUL_INT_LIT, 1, 7).literal(7);
+        code.add(Opcode.SUB_INT, 1, 1, 7);
+        code.add(Opcode.SHR_INT_LIT, 1, 1).literal(1);
+        code.add(Opcode.XOR_INT_LIT, 1, 1).literal(0x55);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 1).index(APPEND_INT);
+        code.add(Opcode.MUL_LONG, 2, 8, 8);
+        code.add(Opcode.CONST, 4).literal(3);
+        code.add(Opcode.USHR_LONG, 2, 2, 4);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 2, 3).index(APPEND_LONG);
+        code.add(Opcode.LONG_TO_INT, 4, 8);
+        code.add(Opcode.INT_TO_BYTE, 4, 4);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 4).index(APPEND_INT);
+        code.add(Opcode.INT_TO_DOUBLE, 2, 7);
+        code.add(Opcode.CONST_WIDE, 5).literal(Double.doubleToRawLongBits(2.5));
+        code.add(Opcode.MUL_DOUBLE, 2, 2, 5);
+        code.add(Opcode.DOUBLE_TO_INT, 4, 2);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 4).index(APPEND_INT);
+        code.add(Opcode.ADD_INT_LIT, 4, 7).literal(0x40);
+        code.add(Opcode.INT_TO_CHAR, 4, 4);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 4).index(APPEND_CHAR);
+        code.add(Opcode.REM_INT_LIT, 4, 7).literal(5);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 4).index(APPEND_INT);
+        code.add(Opcode.INVOKE_VIRTUAL, 0).index(BUILDER_TO_STRING);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.RETURN, 0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("arith", STRING, "I", "J"), STATIC, 10, 3, code);
+
+        for (int a : new int[] {13, -7}) {
+            long b = 123_456_789_123L;
+            String expected = "" + (((a * 7 - a) >> 1) ^ 0x55) + ((b * b) >>> 3) + (byte) b
+                    + (int) (a * 2.5) + (char) (a + 0x40) + a % 5;
+            assertEquals(expected, call(mth, a, b));
+        }
+    }
+
+    private MethodInfo addTableMethod(String name, Opcode switchOpcode, int[] keys) {
+        // int k in v3
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.CONST, 0).literal(4);
+        code.add(Opcode.NEW_ARRAY, 1, 0).index("[I");
+        TestClass.Insn fill = code.add(Opcode.FILL_ARRAY_DATA, 1);
+        TestClass.Insn switchInsn = code.add(switchOpcode, 3);
+        code.add(Opcode.CONST, 0).literal(3);
+        int get = code.here();
+        code.add(Opcode.AGET, 0, 1, 0);
+        returnInt(code, 0);
+        int first = code.here();
+        code.add(Opcode.CONST, 0).literal(0);
+        code.add(Opcode.GOTO).target(get);
+        int second = code.here();
+        code.add(Opcode.CONST, 0).literal(2);
+        code.add(Opcode.GOTO).target(get);
+        code.arrayPayload(fill, new int[] {10, 20, 30, 40}, 4);
+        code.switchPayload(switchInsn, keys, new int[] {first, second});
+        return cls.addMethod(cls.ownMethodRef(name, STRING, "I"), STATIC, 4, 1, code);
+    }
+
+    @Test
+    void switchAndFillArrayPayloads() {
+        MethodInfo packed = addTableMethod("packed", Opcode.PACKED_SWITCH, new int[] {1, 2});
+        assertEquals("10", call(packed, 1));
+        assertEquals("30", call(packed, 2));
+        assertEquals("40", call(packed, 3));
+        assertEquals("40", call(packed, -1));
+
+        MethodInfo sparse = addTableMethod("sparse", Opcode.SPARSE_SWITCH, new int[] {-7, 1000});
+        assertEquals("10", call(sparse, -7));
+        assertEquals("30", call(sparse, 1000));
+        assertEquals("40", call(sparse, 1));
+    }
+
+    @Test
+    void classInitializerFields() {
+        IFieldRef prefix = cls.addField("PREFIX", ArgType.STRING, STRING, STATIC | FINAL,
+                new EncodedValue(EncodedType.ENCODED_STRING, "p:"));
+        IFieldRef name = cls.addField("NAME", ArgType.STRING, STRING, STATIC | FINAL, null);
+        IFieldRef key = cls.addField("KEY", ArgType.array(ArgType.INT), "[I", STATIC | FINAL, null);
+        IFieldRef counter = cls.addField("counter", ArgType.INT, "I", STATIC, null);
+
+        TestClass.Code clinit = new TestClass.Code();
+        clinit.add(Opcode.CONST_STRING, 0).index("n");
+        clinit.add(Opcode.SPUT, 0).index(name);
+        clinit.add(Opcode.CONST, 0).literal(3);
+        clinit.add(Opcode.NEW_ARRAY, 1, 0).index("[I");
+        TestClass.Insn fill = clinit.add(Opcode.FILL_ARRAY_DATA, 1);
+        clinit.add(Opcode.SPUT, 1).index(key);
+        clinit.add(Opcode.RETURN_VOID);
+        clinit.arrayPayload(fill, new int[] {3, 1, 2}, 4);
+        cls.addMethod(cls.ownMethodRef("<clinit>", "V"), STATIC | CONSTRUCTOR, 2, 0, clinit);
+
+        // prefix + name + KEY[i], int i in v3
+        TestClass.Code read = new TestClass.Code();
+        read.add(Opcode.NEW_INSTANCE, 0).index(BUILDER);
+        read.add(Opcode.INVOKE_DIRECT, 0).index(BUILDER_INIT);
+        read.add(Opcode.SGET, 1).index(prefix);
+        read.add(Opcode.INVOKE_VIRTUAL, 0, 1).index(APPEND_STRING);
+        read.add(Opcode.SGET, 1).index(name);
+        read.add(Opcode.INVOKE_VIRTUAL, 0, 1).index(APPEND_STRING);
+        read.add(Opcode.SGET, 1).index(key);
+        read.add(Opcode.AGET, 2, 1, 3);
+        read.add(Opcode.INVOKE_VIRTUAL, 0, 2).index(APPEND_INT);
+        read.add(Opcode.INVOKE_VIRTUAL, 0).index(BUILDER_TO_STRING);
+        read.add(Opcode.MOVE_RESULT, 0);
+        read.add(Opcode.RETURN, 0);
+        MethodInfo readMth = cls.addMethod(cls.ownMethodRef("read", STRING, "I"), STATIC, 4, 1, read);
+        assertEquals("p:n3", call(readMth, 0));
+        assertEquals("p:n2", call(readMth, 2));
+
+        // KEY[i] = 9, then KEY[i] again, each read gets its own copy of the array
+        TestClass.Code write = new TestClass.Code();
+        write.add(Opcode.SGET, 0).index(key);
+        write.add(Opcode.CONST, 1).literal(9);
+        write.add(Opcode.APUT, 1, 0, 2);
+        write.add(Opcode.SGET, 0).index(key);
+        write.add(Opcode.AGET, 0, 0, 2);
+        returnInt(write, 0);
+        MethodInfo writeMth = cls.addMethod(cls.ownMethodRef("write", STRING, "I"), STATIC, 3, 1, write);
+        assertEquals("1", call(writeMth, 1));
+        assertEquals("p:n1", call(readMth, 1));
+
+        // a field which is not final can change at runtime
+        TestClass.Code counterRead = new TestClass.Code();
+        counterRead.add(Opcode.SGET, 0).index(counter);
+        returnInt(counterRead, 0);
+        MethodInfo counterMth = cls.addMethod(cls.ownMethodRef("counter", STRING, "I"), STATIC, 2, 1, counterRead);
+        assertNull(call(counterMth, 0));
+        assertTrue(isDisabled(counterMth));
+    }
+
+    @Test
+    void initializerFailure() {
+        IFieldRef key = cls.addField("KEY", ArgType.STRING, STRING, STATIC | FINAL, null);
+        TestClass.Code clinit = new TestClass.Code();
+        clinit.add(Opcode.INVOKE_STATIC).index(TestClass.methodRef("Ljava/lang/System;", "currentTimeMillis", "J"));
+        clinit.add(Opcode.RETURN_VOID);
+        cls.addMethod(cls.ownMethodRef("<clinit>", "V"), STATIC | CONSTRUCTOR, 1, 0, clinit);
+
+        TestClass other = new TestClass(root, "a.c");
+        TestClass.Code read = new TestClass.Code();
+        read.add(Opcode.SGET, 0).index(key);
+        read.add(Opcode.RETURN, 0);
+        MethodInfo mth = other.addMethod(other.ownMethodRef("read", STRING, "I"), STATIC, 2, 1, read);
+        assertNull(call(mth, 0));
+        assertTrue(isDisabled(mth));
+    }
+
+    @Test
+    void writeOfFieldOutsideInitializer() {
+        IFieldRef name = cls.addField("NAME", ArgType.STRING, STRING, STATIC, null);
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.CONST_STRING, 0).index("x");
+        code.add(Opcode.SPUT, 0).index(name);
+        code.add(Opcode.RETURN, 0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("write", STRING, "I"), STATIC, 2, 1, code);
+        assertNull(call(mth, 0));
+        assertTrue(isDisabled(mth));
+    }
+
+    @Test
+    void budgetFailures() {
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.GOTO).target(0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("loop", STRING, "I"), STATIC, 1, 1, code);
+        for (int i = 0; i < 7; i++) {
+            assertNull(call(mth, i));
+            assertFalse(isDisabled(mth));
+        }
+        // the failure is cached for the same arguments
+        assertNull(call(mth, 0));
+        assertFalse(isDisabled(mth));
+        assertNull(call(mth, 7));
+        assertTrue(isDisabled(mth));
+        assertEquals(8, metrics.counter(PassMetrics.INTERP_RUNS).sum());
+        assertEquals(1, metrics.counter(PassMetrics.INTERP_MEMO_HITS).sum());
+    }
+
+    @Test
+    void timeBudget() {
+        interpreter = new MethodInterpreter(root, Intrinsics.create(root), Integer.MAX_VALUE, 20);
+        interpreter.setMetrics(metrics);
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.GOTO).target(0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("loop", STRING, "I"), STATIC, 1, 1, code);
+        long start = System.nanoTime();
+        assertNull(call(mth, 0));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        // a timeout depends on the machine, it is neither kept nor counted as a budget failure
+        for (int i = 0; i < 9; i++) {
+            assertNull(call(mth, 0));
+        }
+        assertFalse(isDisabled(mth));
+        assertEquals(10, metrics.counter(PassMetrics.INTERP_RUNS).sum());
+        assertEquals(0, metrics.counter(PassMetrics.INTERP_MEMO_HITS).sum());
+    }
+
+    @Test
+    void initializerTimeout() {
+        interpreter = new MethodInterpreter(root, Intrinsics.create(root), Integer.MAX_VALUE, 5);
+        IFieldRef key = cls.addField("KEY", ArgType.STRING, STRING, STATIC | FINAL, null);
+        TestClass.Code clinit = new TestClass.Code();
+        clinit.add(Opcode.GOTO).target(0);
+        cls.addMethod(cls.ownMethodRef("<clinit>", "V"), STATIC | CONSTRUCTOR, 1, 0, clinit);
+
+        TestClass other = new TestClass(root, "a.c");
+        TestClass.Code read = new TestClass.Code();
+        read.add(Opcode.SGET, 0).index(key);
+        read.add(Opcode.RETURN, 0);
+        MethodInfo mth = other.addMethod(other.ownMethodRef("read", STRING, "I"), STATIC, 2, 1, read);
+        assertNull(call(mth, 0));
+        // the class is not marked as failed, so its readers are not disabled
+        assertNull(call(mth, 0));
+        assertFalse(isDisabled(mth));
+    }
+
+    @Test
+    void callDepth() {
+        IMethodRef ref = cls.ownMethodRef("recurse", STRING, "I");
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.INVOKE_STATIC, 0).index(ref);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.RETURN, 0);
+        MethodInfo mth = cls.addMethod(ref, STATIC, 1, 1, code);
+        assertNull(call(mth, 0));
+        assertFalse(isDisabled(mth));
+    }
+
+    @Test
+    void unsupportedCall() {
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.INVOKE_STATIC).index(TestClass.methodRef("Ljava/lang/System;", "currentTimeMillis", "J"));
+        code.add(Opcode.CONST_STRING, 0).index("t");
+        code.add(Opcode.RETURN, 0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("now", STRING, "I"), STATIC, 2, 1, code);
+        assertNull(call(mth, 0));
+        assertTrue(isDisabled(mth));
+        assertNull(call(mth, 1));
+        assertEquals(1, metrics.counter(PassMetrics.INTERP_RUNS).sum());
+    }
+
+    @Test
+    void thrownException() {
+        // 100 / d, int d in v1
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.CONST, 0).literal(100);
+        code.add(Opcode.DIV_INT, 0, 0, 1);
+        returnInt(code, 0);
+        MethodInfo mth = cls.addMethod(cls.ownMethodRef("div", STRING, "I"), STATIC, 2, 1, code);
+        assertNull(call(mth, 0));
+        assertFalse(isDisabled(mth));
+        assertEquals("20", call(mth, 5));
+        assertEquals("20", call(mth, 5));
+        assertEquals(2, metrics.counter(PassMetrics.INTERP_RUNS).sum());
+        assertEquals(1, metrics.counter(PassMetrics.INTERP_FAILED).sum());
+        assertEquals(1, metrics.counter(PassMetrics.INTERP_MEMO_HITS).sum());
+    }
+
+    @Test
+    void notInterpretedMethods() {
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.CONST_STRING, 0).index("s");
+        code.add(Opcode.RETURN, 0);
+        MethodInfo virtual = cls.addMethod(cls.ownMethodRef("virtual", STRING), 0, 2, 1, code);
+        assertNull(interpreter.getFunction(virtual));
+
+        TestClass.Code intCode = new TestClass.Code();
+        intCode.add(Opcode.CONST, 0).literal(1);
+        intCode.add(Opcode.RETURN, 0);
+        MethodInfo returnsInt = cls.addMethod(cls.ownMethodRef("number", "I"), STATIC, 1, 0, intCode);
+        assertNull(interpreter.getFunction(returnsInt));
+
+        MethodInfo jdk = MethodInfo.fromRef(root, TestClass.methodRef(STRING, "valueOf", STRING, "I"));
+        assertNull(interpreter.getFunction(jdk));
+    }
+}
@@ -0,0 +1,416 @@
+package Interpreter;
+
+import jadx.api.plugins.input.data.ICallSite;
+import jadx.api.plugins.input.data.ICodeReader;
+import jadx.api.plugins.input.data.IDebugInfo;
+import jadx.api.plugins.input.data.IFieldRef;
+import jadx.api.plugins.input.data.IMethodData;
+import jadx.api.plugins.input.data.IMethodHandle;
+import jadx.api.plugins.input.data.IMethodProto;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.data.ITry;
+import jadx.api.plugins.input.data.annotations.EncodedValue;
+import jadx.api.plugins.input.data.attributes.IJadxAttribute;
+import jadx.api.plugins.input.insns.InsnData;
+import jadx.api.plugins.input.insns.InsnIndexType;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.api.plugins.input.insns.custom.IArrayPayload;
+import jadx.api.plugins.input.insns.custom.ICustomPayload;
+import jadx.api.plugins.input.insns.custom.ISwitchPayload;
+import jadx.core.dex.info.FieldInfo;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.args.ArgType;
+import jadx.core.dex.nodes.ClassNode;
+import jadx.core.dex.nodes.FieldNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Class of the app with methods written as raw instructions, like the ones a dex input plugin gives,
+ * so the interpreter and the passes run without an input file. An instruction offset is its index.
+ */
+public final class TestClass {
+    public static final int STATIC = 0x8;
+    public static final int FINAL = 0x10;
+    public static final int CONSTRUCTOR = 0x10000;
+    public static final String STRING = "Ljava/lang/String;";
+    private static final AtomicInteger REF_IDS = new AtomicInteger(1);
+
+    public final RootNode root;
+    public final ClassNode cls;
+    public final String type;
+
+    public TestClass(RootNode root, String name) {
+        this.root = root;
+        this.cls = ClassNode.addSyntheticClass(root, name, 1);
+        this.type = 'L' + name.replace('.', '/') + ';';
+    }
+
+    public static IMethodRef methodRef(String cls, String name, String returnType, String... argTypes) {
+        int id = REF_IDS.getAndIncrement();
+        return new IMethodRef() {
+            @Override
+            public int getUniqId() {
+                return id;
+            }
+
+            @Override
+            public void load() {
+            }
+
+            @Override
+            public String getParentClassType() {
+                return cls;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getReturnType() {
+                return returnType;
+            }
+
+            @Override
+            public List<String> getArgTypes() {
+                return List.of(argTypes);
+            }
+        };
+    }
+
+    public static IFieldRef fieldRef(String cls, String name, String type) {
+        return new IFieldRef() {
+            @Override
+            public String getParentClassType() {
+                return cls;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getType() {
+                return type;
+            }
+        };
+    }
+
+    public IMethodRef ownMethodRef(String name, String returnType, String... argTypes) {
+        return methodRef(type, name, returnType, argTypes);
+    }
+
+    /**
+     * @param regs register count, the arguments are in the last ones
+     * @param ins  registers of the arguments
+     */
+    public MethodInfo addMethod(IMethodRef ref, int flags, int regs, int ins, Code code) {
+        ICodeReader reader = new ICodeReader() {
+            @Override
+            public ICodeReader copy() {
+                return this;
+            }
+
+            @Override
+            public void visitInstructions(Consumer<InsnData> consumer) {
+                code.insns.forEach(consumer);
+            }
+
+            @Override
+            public int getRegistersCount() {
+                return regs;
+            }
+
+            @Override
+            public int getArgsStartReg() {
+                return regs - ins;
+            }
+
+            @Override
+            public int getUnitsCount() {
+                return code.insns.size();
+            }
+
+            @Override
+            public IDebugInfo getDebugInfo() {
+                return null;
+            }
+
+            @Override
+            public int getCodeOffset() {
+                return 0;
+            }
+
+            @Override
+            public List<ITry> getTries() {
+                return List.of();
+            }
+        };
+        IMethodData data = new IMethodData() {
+            @Override
+            public IMethodRef getMethodRef() {
+                return ref;
+            }
+
+            @Override
+            public int getAccessFlags() {
+                return flags;
+            }
+
+            @Override
+            public ICodeReader getCodeReader() {
+                return reader;
+            }
+
+            @Override
+            public String disassembleMethod() {
+                return "";
+            }
+
+            @Override
+            public List<IJadxAttribute> getAttributes() {
+                return List.of();
+            }
+        };
+        MethodNode mth = MethodNode.build(cls, data);
+        cls.getMethods().add(mth);
+        return MethodInfo.fromRef(root, ref);
+    }
+
+    /**
+     * @param constant value of the constant attribute, null for none
+     */
+    public IFieldRef addField(String name, ArgType fieldType, String typeDescriptor, int flags, EncodedValue constant) {
+        FieldNode field = new FieldNode(cls, FieldInfo.from(root, cls.getClassInfo(), name, fieldType), flags);
+        if (constant != null) {
+            field.addAttr(constant);
+        }
+        cls.addField(field);
+        return fieldRef(type, name, typeDescriptor);
+    }
+
+    /**
+     * Instructions of one method.
+     */
+    public static final class Code {
+        final List<Insn> insns = new ArrayList<>();
+
+        public Insn add(Opcode opcode, int... regs) {
+            Insn insn = new Insn(opcode, regs, insns.size());
+            insns.add(insn);
+            return insn;
+        }
+
+        /**
+         * @return offset of the next instruction
+         */
+        public int here() {
+            return insns.size();
+        }
+
+        public void arrayPayload(Insn fill, Object data, int elementSize) {
+            fill.target = here();
+            add(Opcode.FILL_ARRAY_DATA_PAYLOAD).payload = new IArrayPayload() {
+                @Override
+                public int getSize() {
+                    return java.lang.reflect.Array.getLength(data);
+                }
+
+                @Override
+                public int getElementSize() {
+                    return elementSize;
+                }
+
+                @Override
+                public Object getData() {
+                    return data;
+                }
+            };
+        }
+
+        /**
+         * @param targets absolute offsets of the cases
+         */
+        public void switchPayload(Insn switchInsn, int[] keys, int[] targets) {
+            switchInsn.target = here();
+            int[] relative = new int[targets.length];
+            for (int i = 0; i < targets.length; i++) {
+                relative[i] = targets[i] - switchInsn.offset;
+            }
+            Opcode opcode = switchInsn.opcode == Opcode.PACKED_SWITCH ? Opcode.PACKED_SWITCH_PAYLOAD : Opcode.SPARSE_SWITCH_PAYLOAD;
+            add(opcode).payload = new ISwitchPayload() {
+                @Override
+                public int getSize() {
+                    return keys.length;
+                }
+
+                @Override
+                public int[] getKeys() {
+                    return keys;
+                }
+
+                @Override
+                public int[] getTargets() {
+                    return relative;
+                }
+            };
+        }
+    }
+
+    public static final class Insn implements InsnData {
+        final Opcode opcode;
+        final int[] regs;
+        final int offset;
+        long literal;
+        int target;
+        Object index;
+        ICustomPayload payload;
+
+        Insn(Opcode opcode, int[] regs, int offset) {
+            this.opcode = opcode;
+            this.regs = regs;
+            this.offset = offset;
+        }
+
+        public Insn literal(long literal) {
+            this.literal = literal;
+            return this;
+        }
+
+        public Insn target(int target) {
+            this.target = target;
+            return this;
+        }
+
+        public Insn index(Object index) {
+            this.index = index;
+            return this;
+        }
+
+        @Override
+        public void decode() {
+        }
+
+        @Override
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int getFileOffset() {
+            return offset;
+        }
+
+        @Override
+        public Opcode getOpcode() {
+            return opcode;
+        }
+
+        @Override
+        public String getOpcodeMnemonic() {
+            return opcode.name();
+        }
+
+        @Override
+        public byte[] getByteCode() {
+            return new byte[0];
+        }
+
+        @Override
+        public InsnIndexType getIndexType() {
+            if (index instanceof IMethodRef) {
+                return InsnIndexType.METHOD_REF;
+            }
+            if (index instanceof IFieldRef) {
+                return InsnIndexType.FIELD_REF;
+            }
+            if (index instanceof String) {
+                return opcode == Opcode.CONST_STRING ? InsnIndexType.STRING_REF : InsnIndexType.TYPE_REF;
+            }
+            return InsnIndexType.NONE;
+        }
+
+        @Override
+        public int getRawOpcodeUnit() {
+            return 0;
+        }
+
+        @Override
+        public int getRegsCount() {
+            return regs.length;
+        }
+
+        @Override
+        public int getReg(int argNum) {
+            return regs[argNum];
+        }
+
+        @Override
+        public int getResultReg() {
+            return -1;
+        }
+
+        @Override
+        public long getLiteral() {
+            return literal;
+        }
+
+        @Override
+        public int getTarget() {
+            return target;
+        }
+
+        @Override
+        public int getIndex() {
+            return 0;
+        }
+
+        @Override
+        public String getIndexAsString() {
+            return (String) index;
+        }
+
+        @Override
+        public String getIndexAsType() {
+            return (String) index;
+        }
+
+        @Override
+        public IFieldRef getIndexAsField() {
+            return (IFieldRef) index;
+        }
+
+        @Override
+        public IMethodRef getIndexAsMethod() {
+            return (IMethodRef) index;
+        }
+
+        @Override
+        public ICallSite getIndexAsCallSite() {
+            return null;
+        }
+
+        @Override
+        public IMethodProto getIndexAsProto(int protoIndex) {
+            return null;
+        }
+
+        @Override
+        public IMethodHandle getIndexAsMethodHandle() {
+            return null;
+        }
+
+        @Override
+        public ICustomPayload getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package ReflectionVisitor;
+
+import InsnScanner.InsnScanner;
+import Interpreter.TestClass;
+import jadx.api.JadxArgs;
+import jadx.api.JadxDecompiler;
+import jadx.api.plugins.input.data.IClassData;
+import jadx.api.plugins.input.data.ILoadResult;
+import jadx.api.plugins.input.data.IMethodRef;
+import jadx.api.plugins.input.data.IResourceData;
+import jadx.api.plugins.input.insns.Opcode;
+import jadx.core.dex.attributes.AType;
+import jadx.core.dex.info.MethodInfo;
+import jadx.core.dex.instructions.BaseInvokeNode;
+import jadx.core.dex.nodes.MethodNode;
+import jadx.core.dex.nodes.RootNode;
+import jadx.core.dex.visitors.DepthTraversal;
+import jadx.core.dex.visitors.IDexTreeVisitor;
+import jadx.core.dex.visitors.typeinference.FinishTypeInference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static Interpreter.TestClass.STATIC;
+import static Interpreter.TestClass.STRING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reflection chains as d8 emits them: the {@code Class[]} and {@code Object[]} arrays are registers filled by APUTs,
+ * the scanner sees them before CodeShrinkVisitor could inline them.
+ */
+class ReflectionVisitorTest {
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String CLASS = "Ljava/lang/Class;";
+    private static final IMethodRef FOR_NAME = TestClass.methodRef(CLASS, "forName", CLASS, STRING);
+    private static final IMethodRef GET_METHOD = TestClass.methodRef(CLASS, "getMethod",
+            "Ljava/lang/reflect/Method;", STRING, "[Ljava/lang/Class;");
+    private static final IMethodRef INVOKE = TestClass.methodRef("Ljava/lang/reflect/Method;", "invoke",
+            OBJECT, OBJECT, "[Ljava/lang/Object;");
+    private static final IMethodRef GET_CONSTRUCTOR = TestClass.methodRef(CLASS, "getConstructor",
+            "Ljava/lang/reflect/Constructor;", "[Ljava/lang/Class;");
+    private static final IMethodRef NEW_INSTANCE = TestClass.methodRef("Ljava/lang/reflect/Constructor;", "newInstance",
+            OBJECT, "[Ljava/lang/Object;");
+
+    private JadxDecompiler jadx;
+    private RootNode root;
+    private TestClass target;
+    private TestClass caller;
+
+    @BeforeEach
+    void setUp(@TempDir File outDir) {
+        JadxArgs args = new JadxArgs();
+        args.setOutDir(outDir);
+        jadx = new JadxDecompiler(args);
+        // no input file, the classes are added below
+        jadx.addCustomLoad(new EmptyLoad());
+        jadx.load();
+        root = jadx.getRoot();
+        target = new TestClass(root, "a.Target");
+        // overloads of the same arity, only the Class[] tells them apart
+        target.addMethod(target.ownMethodRef("m", STRING, STRING), 0, 2, 2, returnArg(1));
+        target.addMethod(target.ownMethodRef("m", STRING, "Ljava/lang/Integer;"), 0, 2, 2, returnArg(1));
+        target.addMethod(target.ownMethodRef("<init>", "V", STRING), TestClass.CONSTRUCTOR, 2, 2, returnVoid());
+        caller = new TestClass(root, "a.Caller");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jadx.close();
+    }
+
+    private static final class EmptyLoad implements ILoadResult {
+        @Override
+        public void visitClasses(Consumer<IClassData> consumer) {
+        }
+
+        @Override
+        public void visitResources(Consumer<IResourceData> consumer) {
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static TestClass.Code returnArg(int reg) {
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.RETURN, reg);
+        return code;
+    }
+
+    private static TestClass.Code returnVoid() {
+        TestClass.Code code = new TestClass.Code();
+        code.add(Opcode.RETURN_VOID);
+        return code;
+    }
+
+    /**
+     * v0 = Class.forName("a.Target"), v3 = new Class[] {String.class}, v4 = 0, v2 = 1.
+     */
+    private static void loadClass(TestClass.Code code) {
+        code.add(Opcode.CONST_STRING, 0).index("a.Target");
+        code.add(Opcode.INVOKE_STATIC, 0).index(FOR_NAME);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.CONST, 2).literal(1);
+        code.add(Opcode.NEW_ARRAY, 3, 2).index("[Ljava/lang/Class;");
+        code.add(Opcode.CONST, 4).literal(0);
+        code.add(Opcode.CONST_CLASS, 5).index(STRING);
+        code.add(Opcode.APUT_OBJECT, 5, 3, 4);
+    }
+
+    private MethodNode process(IMethodRef ref) {
+        ReflectionVisitor visitor = new ReflectionVisitor(jadx);
+        InsnScanner scanner = new InsnScanner();
+        scanner.addHandler(visitor);
+        MethodNode mth = root.resolveMethod(MethodInfo.fromRef(root, ref));
+        mth.getParentClass().load();
+        // jadx passes up to the position of the scanner, then the scanner
+        for (IDexTreeVisitor pass : root.getPasses()) {
+            DepthTraversal.visit(pass, mth);
+            if (pass instanceof FinishTypeInference) {
+                break;
+            }
+        }
+        DepthTraversal.visit(scanner, mth);
+        return mth;
+    }
+
+    private static List<String> calls(MethodNode mth) {
+        return mth.getBasicBlocks().stream()
+                .flatMap(block -> block.getInstructions().stream())
+                .map(insn -> insn.getType() + (insn instanceof BaseInvokeNode
+                        ? " " + ((BaseInvokeNode) insn).getCallMth().getRawFullId() : ""))
+                .toList();
+    }
+
+    @Test
+    void invokeWithRegisterArrays() {
+        // return Class.forName("a.Target").getMethod("m", new Class[] {String.class}).invoke(obj, new Object[] {s})
+        TestClass.Code code = new TestClass.Code();
+        loadClass(code);
+        code.add(Opcode.CONST_STRING, 1).index("m");
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 1, 3).index(GET_METHOD);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.NEW_ARRAY, 3, 2).index("[Ljava/lang/Object;");
+        code.add(Opcode.APUT_OBJECT, 7, 3, 4);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 6, 3).index(INVOKE);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.RETURN, 0);
+        IMethodRef ref = caller.ownMethodRef("call", OBJECT, OBJECT, STRING);
+        caller.addMethod(ref, STATIC, 8, 2, code);
+
+        MethodNode mth = process(ref);
+
+        assertFalse(mth.contains(AType.JADX_ERROR));
+        List<String> calls = calls(mth);
+        assertTrue(calls.contains("INVOKE a.Target.m(Ljava/lang/String;)Ljava/lang/String;"), calls.toString());
+        assertFalse(calls.stream().anyMatch(call -> call.contains("java.lang.reflect") || call.contains("java.lang.Class")), calls.toString());
+        // both arrays went away with the calls using them
+        assertFalse(calls.contains("NEW_ARRAY"), calls.toString());
+        assertFalse(calls.contains("APUT"), calls.toString());
+    }
+
+    @Test
+    void newInstanceWithRegisterArrays() {
+        // return Class.forName("a.Target").getConstructor(new Class[] {String.class}).newInstance(new Object[] {s})
+        TestClass.Code code = new TestClass.Code();
+        loadClass(code);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 3).index(GET_CONSTRUCTOR);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.NEW_ARRAY, 3, 2).index("[Ljava/lang/Object;");
+        code.add(Opcode.APUT_OBJECT, 7, 3, 4);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 3).index(NEW_INSTANCE);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.RETURN, 0);
+        IMethodRef ref = caller.ownMethodRef("create", OBJECT, OBJECT, STRING);
+        caller.addMethod(ref, STATIC, 8, 2, code);
+
+        MethodNode mth = process(ref);
+
+        assertFalse(mth.contains(AType.JADX_ERROR));
+        List<String> calls = calls(mth);
+        assertTrue(calls.contains("CONSTRUCTOR a.Target.<init>(Ljava/lang/String;)V"), calls.toString());
+        assertFalse(calls.contains("NEW_ARRAY"), calls.toString());
+    }
+
+    @Test
+    void unknownArrayIsLeftAlone() {
+        // the Object[] comes from the caller, its elements are not known
+        TestClass.Code code = new TestClass.Code();
+        loadClass(code);
+        code.add(Opcode.CONST_STRING, 1).index("m");
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 1, 3).index(GET_METHOD);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.INVOKE_VIRTUAL, 0, 6, 7).index(INVOKE);
+        code.add(Opcode.MOVE_RESULT, 0);
+        code.add(Opcode.RETURN, 0);
+        IMethodRef ref = caller.ownMethodRef("pass", OBJECT, OBJECT, "[Ljava/lang/Object;");
+        caller.addMethod(ref, STATIC, 8, 2, code);
+
+        MethodNode mth = process(ref);
+
+        assertFalse(mth.contains(AType.JADX_ERROR));
+        List<String> calls = calls(mth);
+        assertEquals(1, calls.stream().filter(call -> call.contains("java.lang.reflect.Method.invoke")).count(), calls.toString());
+    }
+}